@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+
+/**
+ * Throughput of {@link ApplicationPermissionValue#implies(ApplicationFeatureId, ApplicationPermissionMode)} and
+ * {@link ApplicationPermissionValue#refutes(ApplicationFeatureId, ApplicationPermissionMode)}; each invocation checks a
+ * single target against every permission on its path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationPermissionValueBenchmark {
+
+    @Benchmark
+    public void implies(final PermissionEvaluationState state, final Blackhole blackhole) {
+        final int index = state.nextIndex();
+        final ApplicationFeatureId target = state.targets[index];
+        for (final ApplicationPermissionValue value : state.permissionValuesOnPathOfTargets.get(index)) {
+            blackhole.consume(value.implies(target, ApplicationPermissionMode.VIEWING));
+            blackhole.consume(value.implies(target, ApplicationPermissionMode.CHANGING));
+        }
+    }
+
+    @Benchmark
+    public void refutes(final PermissionEvaluationState state, final Blackhole blackhole) {
+        final int index = state.nextIndex();
+        final ApplicationFeatureId target = state.targets[index];
+        for (final ApplicationPermissionValue value : state.permissionValuesOnPathOfTargets.get(index)) {
+            blackhole.consume(value.refutes(target, ApplicationPermissionMode.VIEWING));
+            blackhole.consume(value.refutes(target, ApplicationPermissionMode.CHANGING));
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+
+/**
+ * Throughput of checking a member against a (compiled) {@link ApplicationPermissionValueSet}, and of compiling that
+ * set in the first place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationPermissionValueSetBenchmark {
+
+    @Benchmark
+    public ApplicationPermissionValueSet.Evaluation evaluate_viewing(final PermissionEvaluationState state) {
+        return state.permissionSet.evaluate(state.targets[state.nextIndex()], ApplicationPermissionMode.VIEWING);
+    }
+
+    @Benchmark
+    public ApplicationPermissionValueSet.Evaluation evaluate_changing(final PermissionEvaluationState state) {
+        return state.permissionSet.evaluate(state.targets[state.nextIndex()], ApplicationPermissionMode.CHANGING);
+    }
+
+    @Benchmark
+    public boolean grants_viewing(final PermissionEvaluationState state) {
+        return state.permissionSet.grants(state.targets[state.nextIndex()], ApplicationPermissionMode.VIEWING);
+    }
+
+    @Benchmark
+    public boolean grants_changing(final PermissionEvaluationState state) {
+        return state.permissionSet.grants(state.targets[state.nextIndex()], ApplicationPermissionMode.CHANGING);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ApplicationPermissionValueSet newPermissionSet(final PermissionEvaluationState state) {
+        return new ApplicationPermissionValueSet(state.permissionValues, state.permissionsEvaluationService);
+    }
+
+}
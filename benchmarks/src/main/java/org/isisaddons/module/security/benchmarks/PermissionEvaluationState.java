@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationServiceAllowBeatsVeto;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationServiceVetoBeatsAllow;
+
+/**
+ * A {@link SyntheticFeatureTree} along with a (role's) set of randomly assigned permissions over it, as shared by
+ * the benchmarks.
+ *
+ * <p>
+ *     The random assignment is seeded, so every run (and every release) benchmarks the same permissions for the same
+ *     parameters.
+ * </p>
+ */
+@State(Scope.Benchmark)
+public class PermissionEvaluationState {
+
+    public enum Evaluation {
+        ALLOW_BEATS_VETO {
+            @Override
+            PermissionsEvaluationService newService() {
+                return new PermissionsEvaluationServiceAllowBeatsVeto();
+            }
+        },
+        VETO_BEATS_ALLOW {
+            @Override
+            PermissionsEvaluationService newService() {
+                return new PermissionsEvaluationServiceVetoBeatsAllow();
+            }
+        };
+        abstract PermissionsEvaluationService newService();
+    }
+
+    /**
+     * Depth to which packages are nested.
+     */
+    @Param({"2", "4"})
+    public int depth;
+
+    /**
+     * Number of sub-packages per package, classes per (leaf) package and members per class.
+     */
+    @Param({"4", "8"})
+    public int breadth;
+
+    /**
+     * Number of permissions held (by the one role), each assigned to a randomly chosen feature.
+     */
+    @Param({"10", "100", "1000"})
+    public int permissionsPerRole;
+
+    /**
+     * Percentage of the permissions that are {@link ApplicationPermissionRule#VETO vetoes} (the remainder
+     * being {@link ApplicationPermissionRule#ALLOW allows}).
+     */
+    @Param({"0", "20", "50"})
+    public int vetoPercentage;
+
+    @Param({"ALLOW_BEATS_VETO", "VETO_BEATS_ALLOW"})
+    public Evaluation evaluation;
+
+    PermissionsEvaluationService permissionsEvaluationService;
+    List<ApplicationPermissionValue> permissionValues;
+    ApplicationPermissionValueSet permissionSet;
+
+    /**
+     * The members evaluated, cycled through in turn.
+     */
+    ApplicationFeatureId[] targets;
+
+    /**
+     * For each of the {@link #targets}, the permissions held for the target or for any of its parents, in natural order.
+     */
+    List<SortedSet<ApplicationPermissionValue>> permissionValuesOnPathOfTargets;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final Random random = new Random(1L);
+
+        final SyntheticFeatureTree tree = new SyntheticFeatureTree(depth, breadth);
+        final List<ApplicationFeatureId> features = tree.getFeatures();
+        final ApplicationPermissionMode[] modes = ApplicationPermissionMode.values();
+
+        final Set<ApplicationPermissionValue> values = Sets.newLinkedHashSet();
+        for (int i = 0; i < permissionsPerRole; i++) {
+            final ApplicationFeatureId featureId = features.get(random.nextInt(features.size()));
+            final ApplicationPermissionRule rule =
+                    random.nextInt(100) < vetoPercentage ? ApplicationPermissionRule.VETO : ApplicationPermissionRule.ALLOW;
+            final ApplicationPermissionMode mode = modes[random.nextInt(modes.length)];
+            values.add(new ApplicationPermissionValue(featureId, rule, mode));
+        }
+        permissionValues = Lists.newArrayList(values);
+
+        permissionsEvaluationService = evaluation.newService();
+        permissionSet = new ApplicationPermissionValueSet(permissionValues, permissionsEvaluationService);
+
+        final List<ApplicationFeatureId> members = Lists.newArrayList(tree.getMembers());
+        Collections.shuffle(members, random);
+        targets = members.toArray(new ApplicationFeatureId[members.size()]);
+
+        permissionValuesOnPathOfTargets = Lists.newArrayList();
+        for (final ApplicationFeatureId target : targets) {
+            final List<ApplicationFeatureId> pathIds = target.getPathIds();
+            final SortedSet<ApplicationPermissionValue> valuesOnPath =
+                    Sets.newTreeSet(ApplicationPermissionValue.Comparators.natural());
+            for (final ApplicationPermissionValue value : permissionValues) {
+                if(pathIds.contains(value.getFeatureId())) {
+                    valuesOnPath.add(value);
+                }
+            }
+            permissionValuesOnPathOfTargets.add(valuesOnPath);
+        }
+    }
+
+    /**
+     * Index of the next target to evaluate.
+     */
+    int nextIndex() {
+        final int index = next;
+        next = index + 1 == targets.length ? 0 : index + 1;
+        return index;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
+
+/**
+ * Throughput of the {@link PermissionsEvaluationService} implementations (as selected by
+ * {@link PermissionEvaluationState#evaluation}) called directly, ie without any of the compilation performed by
+ * {@link ApplicationPermissionValueSet}.  Each target is evaluated against all of the permissions on its path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionsEvaluationServiceBenchmark {
+
+    @Benchmark
+    public ApplicationPermissionValueSet.Evaluation evaluate_viewing(final PermissionEvaluationState state) {
+        final int index = state.nextIndex();
+        return state.permissionsEvaluationService.evaluate(
+                state.targets[index], ApplicationPermissionMode.VIEWING, state.permissionValuesOnPathOfTargets.get(index));
+    }
+
+    @Benchmark
+    public ApplicationPermissionValueSet.Evaluation evaluate_changing(final PermissionEvaluationState state) {
+        final int index = state.nextIndex();
+        return state.permissionsEvaluationService.evaluate(
+                state.targets[index], ApplicationPermissionMode.CHANGING, state.permissionValuesOnPathOfTargets.get(index));
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.benchmarks;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+/**
+ * A synthetic hierarchy of packages, classes and members, used as the target of the benchmarks.
+ *
+ * <p>
+ *     Packages are nested to the given depth beneath a single root package, each (non-leaf) package having
+ *     <tt>breadth</tt> sub-packages.  Each leaf package then holds <tt>breadth</tt> classes, each with <tt>breadth</tt>
+ *     members.
+ * </p>
+ */
+class SyntheticFeatureTree {
+
+    private final List<ApplicationFeatureId> packages = Lists.newArrayList();
+    private final List<ApplicationFeatureId> classes = Lists.newArrayList();
+    private final List<ApplicationFeatureId> members = Lists.newArrayList();
+
+    SyntheticFeatureTree(final int depth, final int breadth) {
+        addPackage("bench", depth, breadth);
+    }
+
+    private void addPackage(final String packageFqn, final int depth, final int breadth) {
+        packages.add(ApplicationFeatureId.newPackage(packageFqn));
+        if(depth > 0) {
+            for (int i = 0; i < breadth; i++) {
+                addPackage(packageFqn + ".p" + i, depth - 1, breadth);
+            }
+            return;
+        }
+        for (int i = 0; i < breadth; i++) {
+            final String classFqn = packageFqn + ".C" + i;
+            classes.add(ApplicationFeatureId.newClass(classFqn));
+            for (int j = 0; j < breadth; j++) {
+                members.add(ApplicationFeatureId.newMember(classFqn, "m" + j));
+            }
+        }
+    }
+
+    /**
+     * All features (packages, then classes, then members).
+     */
+    List<ApplicationFeatureId> getFeatures() {
+        final List<ApplicationFeatureId> features = Lists.newArrayList();
+        features.addAll(packages);
+        features.addAll(classes);
+        features.addAll(members);
+        return features;
+    }
+
+    List<ApplicationFeatureId> getMembers() {
+        return members;
+    }
+
+}
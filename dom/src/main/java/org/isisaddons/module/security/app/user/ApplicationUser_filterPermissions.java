@@ -21,7 +21,6 @@
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 
 import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.applib.annotation.Action;
@@ -108,11 +107,7 @@ public boolean apply(final ApplicationFeature input) {
     }
 
     List<UserPermissionViewModel> asViewModels(final Iterable<ApplicationFeature> features) {
-        return Lists.newArrayList(
-                Iterables.transform(
-                        features,
-                        UserPermissionViewModel.Functions.asViewModel(user, container))
-        );
+        return UserPermissionViewModel.newViewModels(features, user, container);
     }
 
     @javax.inject.Inject
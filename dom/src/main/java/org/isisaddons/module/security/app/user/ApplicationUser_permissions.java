@@ -18,9 +18,6 @@
 
 import java.util.List;
 
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
-
 import org.apache.isis.applib.DomainObjectContainer;
 import org.apache.isis.applib.annotation.Action;
 import org.apache.isis.applib.annotation.ActionLayout;
@@ -67,11 +64,7 @@ public ApplicationUser_permissions(final ApplicationUser user) {
     }
 
     List<UserPermissionViewModel> asViewModels(final Iterable<ApplicationFeature> features) {
-        return Lists.newArrayList(
-                Iterables.transform(
-                        features,
-                        UserPermissionViewModel.Functions.asViewModel(user, container))
-        );
+        return UserPermissionViewModel.newViewModels(features, user, container);
     }
 
     @javax.inject.Inject
@@ -18,10 +18,13 @@
 
 import java.nio.charset.Charset;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
 import com.google.common.io.BaseEncoding;
 
 import org.apache.isis.applib.DomainObjectContainer;
@@ -87,6 +90,28 @@ public static UserPermissionViewModel newViewModel(
         return container.newViewModelInstance(UserPermissionViewModel.class, asEncodedString(featureId, user.getUsername(), viewingEvaluation, changingEvaluation));
     }
 
+    /**
+     * As per {@link #newViewModel(ApplicationFeatureId, ApplicationUser, ApplicationPermissionValueSet.Evaluation, ApplicationPermissionValueSet.Evaluation, DomainObjectContainer)},
+     * for each of the features, but with all of the features
+     * {@link ApplicationPermissionValueSet#evaluateAll(java.util.Collection, ApplicationPermissionMode) evaluated} in a single pass.
+     */
+    public static List<UserPermissionViewModel> newViewModels(
+            final Iterable<ApplicationFeature> features, final ApplicationUser user, final DomainObjectContainer container) {
+        final List<ApplicationFeatureId> featureIds = Lists.newArrayList();
+        for (final ApplicationFeature feature : features) {
+            featureIds.add(feature.getFeatureId());
+        }
+        final ApplicationPermissionValueSet permissionSet = user.getPermissionSet();
+        final Map<ApplicationFeatureId, ApplicationPermissionValueSet.Evaluation> viewingEvaluations = permissionSet.evaluateAll(featureIds, ApplicationPermissionMode.VIEWING);
+        final Map<ApplicationFeatureId, ApplicationPermissionValueSet.Evaluation> changingEvaluations = permissionSet.evaluateAll(featureIds, ApplicationPermissionMode.CHANGING);
+
+        final List<UserPermissionViewModel> viewModels = Lists.newArrayList();
+        for (final ApplicationFeatureId featureId : featureIds) {
+            viewModels.add(newViewModel(featureId, user, viewingEvaluations.get(featureId), changingEvaluations.get(featureId), container));
+        }
+        return viewModels;
+    }
+
     public UserPermissionViewModel() {
     }
     //endregion
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom;
+
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.jdo.Transaction;
+import javax.transaction.Synchronization;
+
+import com.google.common.collect.Sets;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+
+/**
+ * Runs callbacks once the current (JDO) transaction has completed.
+ *
+ * <p>
+ *     Used by the module's caches: domain events (even in their
+ *     {@link org.apache.isis.applib.services.eventbus.AbstractDomainEvent.Phase#EXECUTED executed} phase) are fired
+ *     before the transaction commits, so any entry re-cached by a concurrent request in the meantime would still hold
+ *     the pre-commit state.  Invalidating once more after completion discards any such entries.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class TransactionCompletionCallbacks {
+
+    /**
+     * Runs the callback once the current transaction has completed (whether committed or rolled back), or
+     * immediately if there is no current transaction.
+     *
+     * <p>
+     *     A callback registered more than once for the same transaction is run only once.
+     * </p>
+     */
+    @Programmatic
+    public void afterCompletion(final Runnable callback) {
+        final Transaction transaction = currentTransaction();
+        if(transaction == null) {
+            callback.run();
+            return;
+        }
+        final Synchronization synchronization = transaction.getSynchronization();
+        if(synchronization instanceof Callbacks) {
+            ((Callbacks) synchronization).add(callback);
+            return;
+        }
+        final Callbacks callbacks = new Callbacks(synchronization);
+        callbacks.add(callback);
+        transaction.setSynchronization(callbacks);
+    }
+
+    private Transaction currentTransaction() {
+        if(isisJdoSupport == null) {
+            return null;
+        }
+        final Transaction transaction;
+        try {
+            transaction = isisJdoSupport.getJdoPersistenceManager().currentTransaction();
+        } catch(final RuntimeException ex) {
+            // no persistence session
+            return null;
+        }
+        return transaction != null && transaction.isActive() ? transaction : null;
+    }
+
+    /**
+     * Chains to any {@link Synchronization} already registered against the transaction.
+     */
+    static class Callbacks implements Synchronization {
+
+        private final Synchronization previous;
+        private final Set<Runnable> callbacks = Sets.newLinkedHashSet();
+
+        Callbacks(final Synchronization previous) {
+            this.previous = previous;
+        }
+
+        synchronized void add(final Runnable callback) {
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void beforeCompletion() {
+            if(previous != null) {
+                previous.beforeCompletion();
+            }
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            try {
+                if(previous != null) {
+                    previous.afterCompletion(status);
+                }
+            } finally {
+                final Runnable[] toRun;
+                synchronized (this) {
+                    toRun = callbacks.toArray(new Runnable[callbacks.size()]);
+                    callbacks.clear();
+                }
+                for (final Runnable callback : toRun) {
+                    callback.run();
+                }
+            }
+        }
+    }
+
+    //region  >  (injected)
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+    //endregion
+
+}
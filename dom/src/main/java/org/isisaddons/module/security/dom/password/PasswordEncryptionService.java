@@ -25,4 +25,19 @@ public interface PasswordEncryptionService {
 
     @Programmatic
     public boolean matches(final String candidate, final String encrypted);
+
+    /**
+     * Optional SPI, for implementations whose encrypted form records how it was encrypted (eg the work factor), and
+     * which may therefore determine that a password should be re-encrypted, typically when it is next presented
+     * (and so known) at login.
+     */
+    public interface Rehashing extends PasswordEncryptionService {
+
+        /**
+         * Whether the (previously {@link #encrypt(String) encrypted}) password was encrypted with settings other
+         * than those now in force, and so should be re-encrypted.
+         */
+        @Programmatic
+        public boolean needsRehash(final String encrypted);
+    }
 }
@@ -16,36 +16,210 @@
  */
 package org.isisaddons.module.security.dom.password;
 
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.mindrot.jbcrypt.BCrypt;
 
 import org.apache.isis.applib.annotation.Programmatic;
 
-public class PasswordEncryptionServiceUsingJBcrypt implements PasswordEncryptionService {
+/**
+ * Hashes and verifies passwords using bcrypt, each password with its own salt.
+ *
+ * <p>
+ *     The cost (log2 of the number of rounds) is configured using
+ *     <tt>isis.services.PasswordEncryptionServiceUsingJBcrypt.cost</tt>.  Alternatively, setting
+ *     <tt>isis.services.PasswordEncryptionServiceUsingJBcrypt.targetVerificationMillis</tt> calibrates the cost at
+ *     startup to the highest that can verify a password within that time on the current hardware.  Passwords encrypted
+ *     with a lower cost are reported as {@link #needsRehash(String) needing rehash}, and are re-encrypted when next
+ *     used to log in; those encrypted with a higher cost (eg if the cost has since been reduced) are left as they are.
+ * </p>
+ *
+ * <p>
+ *     When running as a service, the (CPU-heavy) hashing is performed on a dedicated {@link PasswordHashingExecutor},
+ *     configured using:
+ * </p>
+ * <ul>
+ *     <li><tt>isis.services.PasswordEncryptionServiceUsingJBcrypt.hashingThreads</tt> - the number of hashing threads
+ *     (defaults to the number of processors); if zero then hashing is instead performed on the calling thread</li>
+ *     <li><tt>isis.services.PasswordEncryptionServiceUsingJBcrypt.hashingQueueCapacity</tt> - the number of requests
+ *     that may wait for a hashing thread (default {@value #DEFAULT_HASHING_QUEUE_CAPACITY}), beyond which they are
+ *     rejected with a {@link PasswordHashingRejectedException}</li>
+ * </ul>
+ */
+public class PasswordEncryptionServiceUsingJBcrypt implements PasswordEncryptionService.Rehashing {
+
+    static final String KEY_HASHING_THREADS = "isis.services.PasswordEncryptionServiceUsingJBcrypt.hashingThreads";
+    static final String KEY_HASHING_QUEUE_CAPACITY = "isis.services.PasswordEncryptionServiceUsingJBcrypt.hashingQueueCapacity";
 
+    static final String KEY_COST = "isis.services.PasswordEncryptionServiceUsingJBcrypt.cost";
+    static final String KEY_TARGET_VERIFICATION_MILLIS = "isis.services.PasswordEncryptionServiceUsingJBcrypt.targetVerificationMillis";
+
+    static final int DEFAULT_HASHING_QUEUE_CAPACITY = 100;
+
+    /**
+     * As per jBCrypt's own default.
+     */
+    static final int DEFAULT_COST = 10;
+    static final int MIN_COST = 4;
+    static final int MAX_COST = 20;
+
+    int cost = DEFAULT_COST;
+
+    /**
+     * If set, then used (rather than a freshly generated salt) for every password; only intended for testing.
+     */
     String salt;
 
-    private String getSalt() {
-        if (salt == null) {
-            salt = BCrypt.gensalt();
+    /**
+     * <tt>null</tt> if hashing is performed on the calling thread.
+     */
+    PasswordHashingExecutor hashingExecutor;
+
+    //region > init, shutdown
+    @Programmatic
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        final int hashingThreads = parseInt(properties.get(KEY_HASHING_THREADS), Runtime.getRuntime().availableProcessors());
+        final int hashingQueueCapacity = parseInt(properties.get(KEY_HASHING_QUEUE_CAPACITY), DEFAULT_HASHING_QUEUE_CAPACITY);
+        if(hashingThreads > 0) {
+            hashingExecutor = new PasswordHashingExecutor(hashingThreads, hashingQueueCapacity);
+        }
+        final String targetVerificationMillis = properties.get(KEY_TARGET_VERIFICATION_MILLIS);
+        cost = targetVerificationMillis != null
+                ? calibrateCost(Long.parseLong(targetVerificationMillis.trim()))
+                : parseInt(properties.get(KEY_COST), DEFAULT_COST);
+    }
+
+    /**
+     * The highest cost for which hashing a password (on this hardware) takes no longer than the target, but no less
+     * than {@link #MIN_COST}.
+     */
+    static int calibrateCost(final long targetVerificationMillis) {
+        final long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetVerificationMillis);
+        // warm up
+        BCrypt.hashpw("calibration", BCrypt.gensalt(MIN_COST));
+        int calibratedCost = MIN_COST;
+        for (int candidateCost = MIN_COST; candidateCost <= MAX_COST; candidateCost++) {
+            final long start = System.nanoTime();
+            BCrypt.hashpw("calibration", BCrypt.gensalt(candidateCost));
+            if(System.nanoTime() - start > targetNanos) {
+                break;
+            }
+            calibratedCost = candidateCost;
         }
-        return salt;
+        return calibratedCost;
+    }
+
+    private static int parseInt(final String value, final int defaultValue) {
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        if(hashingExecutor != null) {
+            hashingExecutor.shutdown();
+            hashingExecutor = null;
+        }
+    }
+    //endregion
+
+    private String getSalt() {
+        return salt != null ? salt : BCrypt.gensalt(cost);
+    }
+
+    /**
+     * The cost with which new passwords are encrypted.
+     */
+    @Programmatic
+    public int getCost() {
+        return cost;
     }
 
     @Programmatic
     @Override
-    public String encrypt(String password) {
-        return password == null ? null : BCrypt.hashpw(password, getSalt());
+    public String encrypt(final String password) {
+        if (password == null) {
+            return null;
+        }
+        final String salt = getSalt();
+        return hash(new Callable<String>() {
+            @Override
+            public String call() {
+                return BCrypt.hashpw(password, salt);
+            }
+        });
     }
 
     @Programmatic
     @Override
-    public boolean matches(String candidate, String encrypted) {
+    public boolean matches(final String candidate, final String encrypted) {
         if (candidate == null && encrypted == null) {
             return true;
         }
         if (candidate == null || encrypted == null) {
             return false;
         }
-        return BCrypt.checkpw(candidate, encrypted);
+        return hash(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return BCrypt.checkpw(candidate, encrypted);
+            }
+        });
+    }
+
+    /**
+     * Whether the password was encrypted with a cost lower than the {@link #getCost() current cost}.
+     */
+    @Programmatic
+    @Override
+    public boolean needsRehash(final String encrypted) {
+        final Integer encryptedCost = costOf(encrypted);
+        return encryptedCost != null && encryptedCost < cost;
+    }
+
+    /**
+     * Parses the cost from a bcrypt hash, of the form <tt>$2a$10$...</tt>; <tt>null</tt> if not a bcrypt hash.
+     */
+    static Integer costOf(final String encrypted) {
+        if(encrypted == null || encrypted.length() < 7 || encrypted.charAt(0) != '$') {
+            return null;
+        }
+        final int costStart = encrypted.indexOf('$', 1) + 1;
+        if(costStart == 0 || costStart + 2 >= encrypted.length() || encrypted.charAt(costStart + 2) != '$') {
+            return null;
+        }
+        try {
+            return Integer.parseInt(encrypted.substring(costStart, costStart + 2));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private <T> T hash(final Callable<T> task) {
+        final PasswordHashingExecutor hashingExecutor = this.hashingExecutor;
+        if(hashingExecutor != null) {
+            return hashingExecutor.execute(task);
+        }
+        try {
+            return task.call();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * The executor on which passwords are hashed, for its metrics; <tt>null</tt> if hashing on the calling thread.
+     */
+    @Programmatic
+    public PasswordHashingExecutor getHashingExecutor() {
+        return hashingExecutor;
     }
 }
@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shiro.authc.AuthenticationException;
+
+/**
+ * A dedicated, fixed-size pool of threads on which (CPU-heavy) password hashing and verification is performed, so
+ * that a burst of logins cannot tie up every request-handling thread of the container.
+ *
+ * <p>
+ *     Requests are queued up to a fixed depth; beyond that they are rejected immediately with a
+ *     {@link PasswordHashingRejectedException}, rather than being made to wait.  The calling thread otherwise blocks
+ *     until its request has been processed.
+ * </p>
+ *
+ * <p>
+ *     Records the number of requests submitted, completed and rejected, along with the total (and maximum) time spent
+ *     by requests waiting in the queue and being hashed.
+ * </p>
+ */
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final AtomicLong totalHashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    /**
+     * @param threads - number of hashing threads.
+     * @param queueCapacity - maximum number of requests waiting for a thread, beyond which requests are rejected.
+     */
+    public PasswordHashingExecutor(final int threads, final int queueCapacity) {
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                new HashingThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Performs the hashing task on one of the hashing threads, waiting for its result.
+     *
+     * @throws PasswordHashingRejectedException - if the queue of pending requests is full.
+     */
+    public <T> T execute(final Callable<T> task) {
+        final long submittedAt = System.nanoTime();
+        final Future<T> future;
+        try {
+            future = executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    final long startedAt = System.nanoTime();
+                    record(totalQueueWaitNanos, maxQueueWaitNanos, startedAt - submittedAt);
+                    try {
+                        return task.call();
+                    } finally {
+                        record(totalHashNanos, maxHashNanos, System.nanoTime() - startedAt);
+                        completedCount.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedCount.incrementAndGet();
+            throw new PasswordHashingRejectedException("Too many concurrent authentication requests; try again later");
+        }
+        submittedCount.incrementAndGet();
+
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException(ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AuthenticationException(cause);
+        }
+    }
+
+    private static void record(final AtomicLong total, final AtomicLong max, final long nanos) {
+        total.addAndGet(nanos);
+        long currentMax;
+        while(nanos > (currentMax = max.get()) && !max.compareAndSet(currentMax, nanos)) {
+            // retry
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //region > metrics
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * The number of requests currently waiting for a hashing thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getTotalQueueWait(final TimeUnit unit) {
+        return unit.convert(totalQueueWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxQueueWait(final TimeUnit unit) {
+        return unit.convert(maxQueueWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getTotalHashTime(final TimeUnit unit) {
+        return unit.convert(totalHashNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxHashTime(final TimeUnit unit) {
+        return unit.convert(maxHashNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    //endregion
+
+    private static class HashingThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+        private final int poolNumber = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                    "isis-module-security-password-hashing-" + poolNumber + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
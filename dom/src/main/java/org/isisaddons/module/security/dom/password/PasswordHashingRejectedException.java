@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import org.apache.shiro.authc.AuthenticationException;
+
+/**
+ * Thrown (fail-fast) by {@link PasswordHashingExecutor} when its queue of pending hashing requests is full, in
+ * other words when the system is under too much load to hash (or verify) any more passwords for now.
+ *
+ * <p>
+ *     Distinct from the other {@link AuthenticationException}s thrown for bad credentials, so that the client can be
+ *     told to retry later.
+ * </p>
+ */
+public class PasswordHashingRejectedException extends AuthenticationException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingRejectedException(final String message) {
+        super(message);
+    }
+}
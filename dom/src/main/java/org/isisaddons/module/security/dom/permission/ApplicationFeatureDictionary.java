@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Maps;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+/**
+ * Interns {@link ApplicationFeatureId}s (packages, classes and members) as dense <tt>int</tt>s, recording for each the
+ * (interned) id of its parent and also (as an array) its {@link ApplicationFeatureId#getPathIds() path ids}.
+ *
+ * <p>
+ *     Ids are assigned the first time a feature is seen, and are only meaningful within the current JVM.  A feature's
+ *     parent is always interned before the feature itself, so the ancestors of any feature can then be walked using
+ *     primitive array lookups alone, without recomputing {@link ApplicationFeatureId#getPathIds() path ids}.
+ * </p>
+ *
+ * <p>
+ *     Lookups are lock-free; only the interning of a previously unseen feature is synchronized.
+ * </p>
+ *
+ * <p>
+ *     Rather than a single JVM-wide table, each {@link ApplicationPermissionValueSet} holds on to the
+ *     {@link #current() current} dictionary at the time it is compiled (since its encoded verdicts are only meaningful
+ *     for that dictionary).  Once the current dictionary holds {@link #MAXIMUM_SIZE} features it is replaced by a new
+ *     one, and so is garbage collected once the last of the permission sets compiled against it is discarded (for
+ *     example, when the permission caches are invalidated, or on redeployment).
+ * </p>
+ */
+final class ApplicationFeatureDictionary {
+
+    /**
+     * The number of features after which the {@link #current() current} dictionary is replaced.
+     */
+    static final int MAXIMUM_SIZE = 100000;
+
+    private static volatile ApplicationFeatureDictionary current = new ApplicationFeatureDictionary(MAXIMUM_SIZE);
+
+    /**
+     * The dictionary to be used by any newly compiled {@link ApplicationPermissionValueSet}.
+     */
+    static ApplicationFeatureDictionary current() {
+        final ApplicationFeatureDictionary dictionary = current;
+        if(!dictionary.isFull()) {
+            return dictionary;
+        }
+        synchronized (ApplicationFeatureDictionary.class) {
+            if(current.isFull()) {
+                current = new ApplicationFeatureDictionary(MAXIMUM_SIZE);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * The parent id of a top-level package.
+     */
+    static final int NO_PARENT = -1;
+
+    private final ConcurrentMap<ApplicationFeatureId, Integer> idByFeatureId = Maps.newConcurrentMap();
+
+    /**
+     * Indexed by id; republished (after being written to) whenever a feature is interned.
+     */
+    private volatile int[] parentIds = new int[1024];
+
+    /**
+     * Indexed by id, the {@link ApplicationFeatureId#getPathIds() path ids} of each feature (most specific first);
+     * published before {@link #parentIds}.
+     */
+    private volatile ApplicationFeatureId[][] pathIdsById = new ApplicationFeatureId[1024][];
+
+    /**
+     * Written only while holding the lock on <tt>this</tt>.
+     */
+    private volatile int size;
+
+    private final int maximumSize;
+
+    ApplicationFeatureDictionary(final int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Whether this dictionary should no longer be used for newly compiled permission sets; features can still be
+     * interned (on behalf of the permission sets already compiled against it).
+     */
+    boolean isFull() {
+        return size >= maximumSize;
+    }
+
+    int idOf(final ApplicationFeatureId featureId) {
+        final Integer id = idByFeatureId.get(featureId);
+        return id != null ? id : intern(featureId);
+    }
+
+    int parentOf(final int id) {
+        return parentIds[id];
+    }
+
+    /**
+     * The {@link ApplicationFeatureId#getPathIds() path ids} of the feature, as a shared array that must not be modified.
+     */
+    ApplicationFeatureId[] pathIdsOf(final ApplicationFeatureId featureId) {
+        return pathIdsById[idOf(featureId)];
+    }
+
+    private synchronized int intern(final ApplicationFeatureId featureId) {
+        final Integer existingId = idByFeatureId.get(featureId);
+        if(existingId != null) {
+            return existingId;
+        }
+        final List<ApplicationFeatureId> pathIds = featureId.getPathIds();
+        final int parentId = pathIds.size() > 1 ? intern(pathIds.get(1)) : NO_PARENT;
+
+        final ApplicationFeatureId[] pathIdArray = new ApplicationFeatureId[pathIds.size()];
+        pathIdArray[0] = featureId;
+        if(parentId != NO_PARENT) {
+            final ApplicationFeatureId[] parentPathIdArray = this.pathIdsById[parentId];
+            System.arraycopy(parentPathIdArray, 0, pathIdArray, 1, parentPathIdArray.length);
+        }
+
+        int[] parentIds = this.parentIds;
+        ApplicationFeatureId[][] pathIdsById = this.pathIdsById;
+        if(size == parentIds.length) {
+            parentIds = Arrays.copyOf(parentIds, size * 2);
+            pathIdsById = Arrays.copyOf(pathIdsById, size * 2);
+        }
+        final int id = size++;
+        pathIdsById[id] = pathIdArray;
+        parentIds[id] = parentId;
+        this.pathIdsById = pathIdsById;
+        this.parentIds = parentIds;
+
+        idByFeatureId.put(featureId, id);
+        return id;
+    }
+
+}
@@ -43,6 +43,7 @@
 
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
+import org.isisaddons.module.security.shiro.IsisModuleSecurityRealmInvalidator;
 
 @DomainService(
         nature = NatureOfService.DOMAIN,
@@ -239,6 +240,7 @@ public ApplicationPermission newPermissionNoCheck(
         permission.setFeatureType(featureType);
         permission.setFeatureFqn(featureFqn);
         container.persistIfNotAlready(permission);
+        invalidatePermissionSets(role);
         return permission;
     }
 
@@ -267,9 +269,23 @@ public ApplicationPermission newPermission(
         permission.setFeatureType(featureType);
         permission.setFeatureFqn(featureFqn);
         container.persistIfNotAlready(permission);
+        invalidatePermissionSets(role);
 
         return permission;
     }
+
+    /**
+     * No domain event is raised for permissions created programmatically, so explicitly discards the compiled
+     * permission sets and the realm's cached authorization info for the users of the role.
+     */
+    private void invalidatePermissionSets(final ApplicationRole role) {
+        if(applicationPermissionValueSetCache != null) {
+            applicationPermissionValueSetCache.invalidateAll();
+        }
+        if(isisModuleSecurityRealmInvalidator != null && role != null) {
+            isisModuleSecurityRealmInvalidator.invalidateAuthorizationInfoForRole(role.getName());
+        }
+    }
     //endregion
 
     //region > allPermission (programmatic)
@@ -382,6 +398,12 @@ private ApplicationPermissionFactory getApplicationPermissionFactory() {
 
     @Inject
     QueryResultsCache queryResultsCache;
+
+    @Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+
+    @Inject
+    IsisModuleSecurityRealmInvalidator isisModuleSecurityRealmInvalidator;
     //endregion
 
 }
@@ -102,6 +102,7 @@ public boolean refutes(final ApplicationFeatureId featureId, final ApplicationPe
 
     private boolean onPathOf(final ApplicationFeatureId featureId) {
 
+        // not using the ApplicationFeatureDictionary, so as not to intern arbitrary features as a side-effect
         final List<ApplicationFeatureId> pathIds = featureId.getPathIds();
         for (final ApplicationFeatureId pathId : pathIds) {
             if(getFeatureId().equals(pathId)) {
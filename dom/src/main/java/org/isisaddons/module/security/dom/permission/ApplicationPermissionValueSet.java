@@ -18,11 +18,17 @@
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.TreeMultimap;
 
@@ -91,6 +97,68 @@ public static abstract class ActionDomainEvent extends SecurityModule.ActionDoma
      */
     private final PermissionsEvaluationService permissionsEvaluationService;
 
+    /**
+     * The permissions of each feature, in the order in which they are passed to the {@link PermissionsEvaluationService}:
+     * either {@link PermissionsEvaluationService.PreOrdering#preOrdered(Collection) pre-ordered} once by the service
+     * (if it supports this), or otherwise in natural order.
+     *
+     * <p>
+     *     Held as random-access lists (rather than as views of {@link #permissionsByFeature}) so that they can be iterated
+     *     without allocating.  Not serialized.
+     * </p>
+     */
+    private final transient Map<ApplicationFeatureId, List<ApplicationPermissionValue>> orderedPermissionsByFeature;
+
+    /**
+     * The pre-computed {@link Evaluation} for every feature that has at least one permission (indexed by
+     * {@link ApplicationPermissionMode#ordinal() mode}), taking into account the permissions of all of that feature's
+     * parents.
+     *
+     * <p>
+     *     Any target feature is therefore evaluated by locating the nearest of its {@link ApplicationFeatureId#getPathIds() path ids}
+     *     held in this map; no further walking of the feature hierarchy (nor any call to the
+     *     {@link PermissionsEvaluationService}) is required.
+     * </p>
+     *
+     * <p>
+     *     Only compiled if the {@link PermissionsEvaluationService} is one of the framework-provided implementations
+     *     ({@link PermissionsEvaluationServiceAllowBeatsVeto} or {@link PermissionsEvaluationServiceVetoBeatsAllow},
+     *     but not any subclass of these), because these only consider the rule and mode of each permission on the path
+     *     of the target feature, never the target itself.  Is <tt>null</tt> otherwise,
+     *     in which case every evaluation delegates to the service.
+     * </p>
+     *
+     * <p>
+     *     Not serialized; recompiled in {@link #readResolve()}.
+     * </p>
+     */
+    private final transient Map<ApplicationFeatureId, Evaluation[]> evaluationsByFeature;
+
+    /**
+     * The {@link ApplicationFeatureDictionary interned} ids of the features in {@link #evaluationsByFeature}.
+     *
+     * <p>
+     *     Together with {@link #grantedByMode}, this is a primitive encoding of the {@link Evaluation#isGranted() verdicts}
+     *     of {@link #evaluationsByFeature}, used by {@link #grants(ApplicationFeatureId, ApplicationPermissionMode)}
+     *     to walk the ancestors of the target feature using integer ids alone.
+     * </p>
+     *
+     * <p>
+     *     Is <tt>null</tt> if {@link #evaluationsByFeature} is not compiled.  Not serialized.
+     * </p>
+     */
+    private final transient BitSet featuresWithPermissions;
+
+    /**
+     * Indexed by {@link ApplicationPermissionMode#ordinal() mode}, the {@link ApplicationFeatureDictionary interned}
+     * ids of those {@link #featuresWithPermissions features} for which access is granted.
+     */
+    private final transient BitSet[] grantedByMode;
+
+    /**
+     * The dictionary against which {@link #featuresWithPermissions} and {@link #grantedByMode} are encoded.  Not serialized.
+     */
+    private final transient ApplicationFeatureDictionary dictionary = ApplicationFeatureDictionary.current();
 
     //endregion
 
@@ -111,12 +179,125 @@ public ApplicationPermissionValueSet(final Iterable<ApplicationPermissionValue>
                 permissionsEvaluationService != null
                         ? permissionsEvaluationService
                         : PermissionsEvaluationService.DEFAULT;
+        this.orderedPermissionsByFeature = order();
+        this.evaluationsByFeature = compile();
+        if(evaluationsByFeature != null) {
+            this.featuresWithPermissions = new BitSet();
+            this.grantedByMode = new BitSet[ApplicationPermissionMode.values().length];
+            encode();
+        } else {
+            this.featuresWithPermissions = null;
+            this.grantedByMode = null;
+        }
+    }
+
+    private Map<ApplicationFeatureId, List<ApplicationPermissionValue>> order() {
+        final PermissionsEvaluationService.PreOrdering preOrdering = preOrderingOf(permissionsEvaluationService);
+        final Map<ApplicationFeatureId, List<ApplicationPermissionValue>> ordered = Maps.newHashMap();
+        for (final Map.Entry<ApplicationFeatureId, Collection<ApplicationPermissionValue>> entry : permissionsByFeature.asMap().entrySet()) {
+            ordered.put(entry.getKey(),
+                    preOrdering != null
+                            ? preOrdering.preOrdered(entry.getValue())
+                            : ImmutableList.copyOf(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(ordered);
+    }
+
+    private Map<ApplicationFeatureId, Evaluation[]> compile() {
+        if(!isFrameworkProvided(permissionsEvaluationService)) {
+            return null;
+        }
+        final ApplicationPermissionMode[] modes = ApplicationPermissionMode.values();
+        final Map<ApplicationFeatureId, Evaluation[]> evaluations = Maps.newHashMap();
+        for (final ApplicationFeatureId featureId : permissionsByFeature.keySet()) {
+            final Evaluation[] evaluationByMode = new Evaluation[modes.length];
+            for (final ApplicationPermissionMode mode : modes) {
+                evaluationByMode[mode.ordinal()] = doEvaluate(featureId, mode);
+            }
+            evaluations.put(featureId, evaluationByMode);
+        }
+        return Collections.unmodifiableMap(evaluations);
+    }
+
+    private void encode() {
+        for (int i = 0; i < grantedByMode.length; i++) {
+            grantedByMode[i] = new BitSet();
+        }
+        for (final Map.Entry<ApplicationFeatureId, Evaluation[]> entry : evaluationsByFeature.entrySet()) {
+            final int id = dictionary.idOf(entry.getKey());
+            featuresWithPermissions.set(id);
+            final Evaluation[] evaluationByMode = entry.getValue();
+            for (int i = 0; i < evaluationByMode.length; i++) {
+                if(evaluationByMode[i].isGranted()) {
+                    grantedByMode[i].set(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * The service, if it has opted in to {@link PermissionsEvaluationService.PreOrdering pre-ordering}.
+     *
+     * <p>
+     *     Subclasses of the framework-provided implementations are excluded, since they may override
+     *     {@link PermissionsEvaluationService#evaluate(ApplicationFeatureId, ApplicationPermissionMode, Collection)}.
+     * </p>
+     */
+    private static PermissionsEvaluationService.PreOrdering preOrderingOf(final PermissionsEvaluationService permissionsEvaluationService) {
+        if(!(permissionsEvaluationService instanceof PermissionsEvaluationService.PreOrdering)) {
+            return null;
+        }
+        if(permissionsEvaluationService instanceof PermissionsEvaluationServiceAbstract && !isFrameworkProvided(permissionsEvaluationService)) {
+            return null;
+        }
+        return (PermissionsEvaluationService.PreOrdering) permissionsEvaluationService;
+    }
+
+    /**
+     * Whether the service is exactly one of the framework-provided implementations (rather than some subclass), whose
+     * verdicts are known to depend only on the rule and mode of each permission on the path of the target feature.
+     */
+    private static boolean isFrameworkProvided(final PermissionsEvaluationService permissionsEvaluationService) {
+        final Class<?> serviceClass = permissionsEvaluationService.getClass();
+        return serviceClass == PermissionsEvaluationServiceAllowBeatsVeto.class
+                || serviceClass == PermissionsEvaluationServiceVetoBeatsAllow.class;
+    }
+
+    /**
+     * Recompiles the (transient) {@link #orderedPermissionsByFeature}, {@link #evaluationsByFeature}, {@link #featuresWithPermissions} and {@link #grantedByMode}.
+     */
+    private Object readResolve() {
+        return new ApplicationPermissionValueSet(values, permissionsEvaluationService);
+    }
+    //endregion
+
+    //region > union
+
+    /**
+     * Combines the {@link ApplicationPermissionValue permission}s of each of the provided sets (ignoring any duplicates).
+     */
+    @Programmatic
+    public static ApplicationPermissionValueSet union(
+            final Iterable<ApplicationPermissionValueSet> permissionSets,
+            final PermissionsEvaluationService permissionsEvaluationService) {
+        final Set<ApplicationPermissionValue> values = Sets.newLinkedHashSet();
+        for (final ApplicationPermissionValueSet permissionSet : permissionSets) {
+            values.addAll(permissionSet.values);
+        }
+        return new ApplicationPermissionValueSet(values, permissionsEvaluationService);
     }
+
     //endregion
 
     //region > grants, evaluate
 
     public static class Evaluation {
+
+        /**
+         * Shared (immutable) evaluation for when no permission applies.
+         */
+        public static final Evaluation NOT_GRANTED = new Evaluation(null, false);
+
         private final ApplicationPermissionValue permissionValue;
         private final boolean granted;
 
@@ -136,22 +317,102 @@ public boolean isGranted() {
 
     @Programmatic
     public boolean grants(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
-        return evaluate(featureId, mode).isGranted();
+        if(featuresWithPermissions == null) {
+            return evaluate(featureId, mode).isGranted();
+        }
+        for (int id = dictionary.idOf(featureId); id != ApplicationFeatureDictionary.NO_PARENT; id = dictionary.parentOf(id)) {
+            if(featuresWithPermissions.get(id)) {
+                return grantedByMode[mode.ordinal()].get(id);
+            }
+        }
+        return false;
     }
 
     @Programmatic
     public Evaluation evaluate(
             final ApplicationFeatureId featureId,
             final ApplicationPermissionMode mode) {
-        final List<ApplicationFeatureId> pathIds = featureId.getPathIds();
-        for (final ApplicationFeatureId pathId : pathIds) {
-            final Collection<ApplicationPermissionValue> permissionValues = permissionsByFeature.get(pathId);
-            final Evaluation evaluation = permissionsEvaluationService.evaluate(featureId, mode, permissionValues);
+        if(evaluationsByFeature == null) {
+            return doEvaluate(featureId, mode);
+        }
+        final ApplicationFeatureId[] pathIds = dictionary.pathIdsOf(featureId);
+        for (int i = 0; i < pathIds.length; i++) {
+            final Evaluation[] evaluationByMode = evaluationsByFeature.get(pathIds[i]);
+            if(evaluationByMode != null) {
+                return evaluationByMode[mode.ordinal()];
+            }
+        }
+        return Evaluation.NOT_GRANTED;
+    }
+
+    /**
+     * Evaluates each of the provided features in a single pass, equivalent to (but cheaper than) calling
+     * {@link #evaluate(ApplicationFeatureId, ApplicationPermissionMode)} for each in turn.
+     *
+     * <p>
+     *     The verdict of each ancestor (class or package) that does not itself hold any permissions is resolved only
+     *     once, and then handed down to all of the features beneath it.
+     * </p>
+     *
+     * @return evaluations keyed by feature, iterated in the same order as the provided features.
+     */
+    @Programmatic
+    public Map<ApplicationFeatureId, Evaluation> evaluateAll(
+            final Collection<ApplicationFeatureId> featureIds,
+            final ApplicationPermissionMode mode) {
+        final Map<ApplicationFeatureId, Evaluation> evaluations = Maps.newLinkedHashMap();
+        if(evaluationsByFeature == null) {
+            for (final ApplicationFeatureId featureId : featureIds) {
+                evaluations.put(featureId, evaluate(featureId, mode));
+            }
+            return evaluations;
+        }
+
+        final Map<ApplicationFeatureId, Evaluation> evaluationsByAncestor = Maps.newHashMap();
+        for (final ApplicationFeatureId featureId : featureIds) {
+            final ApplicationFeatureId[] pathIds = dictionary.pathIdsOf(featureId);
+            Evaluation evaluation = null;
+            int resolvedAt = 0;
+            for (; resolvedAt < pathIds.length; resolvedAt++) {
+                final ApplicationFeatureId pathId = pathIds[resolvedAt];
+                final Evaluation[] evaluationByMode = evaluationsByFeature.get(pathId);
+                evaluation = evaluationByMode != null
+                        ? evaluationByMode[mode.ordinal()]
+                        : evaluationsByAncestor.get(pathId);
+                if(evaluation != null) {
+                    break;
+                }
+            }
+            if(evaluation == null) {
+                evaluation = Evaluation.NOT_GRANTED;
+            }
+            // hand down to every ancestor walked above that held no permissions itself
+            for (int i = 1; i < resolvedAt; i++) {
+                evaluationsByAncestor.put(pathIds[i], evaluation);
+            }
+            evaluations.put(featureId, evaluation);
+        }
+        return evaluations;
+    }
+
+    private Evaluation doEvaluate(
+            final ApplicationFeatureId featureId,
+            final ApplicationPermissionMode mode) {
+        final PermissionsEvaluationService.PreOrdering preOrdering = preOrderingOf(permissionsEvaluationService);
+        final ApplicationFeatureId[] pathIds = dictionary.pathIdsOf(featureId);
+        for (int i = 0; i < pathIds.length; i++) {
+            List<ApplicationPermissionValue> permissionValues = orderedPermissionsByFeature.get(pathIds[i]);
+            if(permissionValues == null) {
+                permissionValues = Collections.emptyList();
+            }
+            final Evaluation evaluation = preOrdering != null
+                    ? preOrdering.evaluatePreOrdered(featureId, mode, permissionValues)
+                    : permissionsEvaluationService.evaluate(featureId, mode, permissionValues);
             if(evaluation != null) {
                 return evaluation;
             }
         }
-        return new Evaluation(null, false);
+        return Evaluation.NOT_GRANTED;
     }
 
     //endregion
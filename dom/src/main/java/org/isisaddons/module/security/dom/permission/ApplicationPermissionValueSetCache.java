@@ -0,0 +1,212 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.Subscribe;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.AbstractDomainEvent;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+
+import org.isisaddons.module.security.dom.TransactionCompletionCallbacks;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+
+/**
+ * Holds an immutable {@link ApplicationPermissionValueSet} for each {@link ApplicationRole role}, compiled once from
+ * {@link ApplicationPermissionRepository#findByRole(ApplicationRole)} and then shared across requests.
+ *
+ * <p>
+ *     The permission set of a user is then simply the {@link ApplicationPermissionValueSet#union(Iterable, PermissionsEvaluationService) union}
+ *     of the permission sets of its roles, so does not require any further querying of permissions.  Moreover, these
+ *     unions are canonicalized by the names of the roles, so that all users with the same set of roles share the
+ *     same (immutable) instance, for as long as any of them still references it.
+ * </p>
+ *
+ * <p>
+ *     The compiled sets are discarded whenever a permission or role is modified through any of the module's actions
+ *     (as notified through their domain events), or whenever a permission is created programmatically through the
+ *     {@link ApplicationPermissionRepository}.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class ApplicationPermissionValueSetCache {
+
+    //region > init, shutdown
+    @Programmatic
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+    //endregion
+
+    //region > permissionSetFor (programmatic)
+
+    private final ConcurrentMap<String, ApplicationPermissionValueSet> permissionSetByRoleName = Maps.newConcurrentMap();
+
+    /**
+     * Canonical permission set for each distinct combination of role names; weakly held, so discarded once no
+     * longer referenced by any principal.
+     */
+    private final Cache<Set<String>, ApplicationPermissionValueSet> permissionSetByRoleNames =
+            CacheBuilder.newBuilder().weakValues().build();
+
+    /**
+     * Incremented on every {@link #invalidateAll() invalidation}, so that a permission set compiled concurrently
+     * from stale data is not then cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The (cached) permission set for a single role.
+     */
+    @Programmatic
+    public ApplicationPermissionValueSet permissionSetFor(final ApplicationRole role) {
+        final String roleName = role.getName();
+        final ApplicationPermissionValueSet permissionSet = permissionSetByRoleName.get(roleName);
+        if(permissionSet != null) {
+            return permissionSet;
+        }
+        final long generationBefore = generation.get();
+        final List<ApplicationPermission> permissions = applicationPermissionRepository.findByRole(role);
+        final ApplicationPermissionValueSet newPermissionSet = new ApplicationPermissionValueSet(
+                Iterables.transform(permissions, ApplicationPermission.Functions.AS_VALUE),
+                permissionsEvaluationService);
+        if(generation.get() != generationBefore) {
+            return newPermissionSet;
+        }
+        final ApplicationPermissionValueSet existingPermissionSet = permissionSetByRoleName.putIfAbsent(roleName, newPermissionSet);
+        return existingPermissionSet != null ? existingPermissionSet : newPermissionSet;
+    }
+
+    /**
+     * The (canonical) union of the (cached) permission sets of each of the roles.
+     */
+    @Programmatic
+    public ApplicationPermissionValueSet permissionSetFor(final Iterable<ApplicationRole> roles) {
+        final Set<String> roleNames = ImmutableSortedSet.copyOf(Iterables.transform(roles, ApplicationRole.Functions.GET_NAME));
+        final ApplicationPermissionValueSet permissionSet = permissionSetByRoleNames.getIfPresent(roleNames);
+        if(permissionSet != null) {
+            return permissionSet;
+        }
+        final long generationBefore = generation.get();
+        final List<ApplicationPermissionValueSet> permissionSets = Lists.newArrayList();
+        for (final ApplicationRole role : roles) {
+            permissionSets.add(permissionSetFor(role));
+        }
+        final ApplicationPermissionValueSet newPermissionSet =
+                ApplicationPermissionValueSet.union(permissionSets, permissionsEvaluationService);
+        if(generation.get() != generationBefore) {
+            return newPermissionSet;
+        }
+        final ApplicationPermissionValueSet existingPermissionSet =
+                permissionSetByRoleNames.asMap().putIfAbsent(roleNames, newPermissionSet);
+        return existingPermissionSet != null ? existingPermissionSet : newPermissionSet;
+    }
+    //endregion
+
+    //region > invalidateAll (programmatic)
+
+    /**
+     * Discards all compiled permission sets, so that they are recompiled when next required.
+     *
+     * <p>
+     *     Because this is called before the current transaction commits, the sets are discarded once more after it
+     *     completes, in case any were recompiled by a concurrent request from the pre-commit data in the meantime.
+     * </p>
+     */
+    @Programmatic
+    public void invalidateAll() {
+        doInvalidateAll.run();
+        if(transactionCompletionCallbacks != null) {
+            transactionCompletionCallbacks.afterCompletion(doInvalidateAll);
+        }
+    }
+
+    private final Runnable doInvalidateAll = new Runnable() {
+        @Override
+        public void run() {
+            permissionSetByRoleName.clear();
+            permissionSetByRoleNames.invalidateAll();
+            generation.incrementAndGet();
+        }
+    };
+    //endregion
+
+    //region > on (event bus subscriptions)
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationPermission.ActionDomainEvent ev) {
+        if(ev.getEventPhase() == AbstractDomainEvent.Phase.EXECUTED) {
+            invalidateAll();
+        }
+    }
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationRole.ActionDomainEvent ev) {
+        if(ev.getEventPhase() == AbstractDomainEvent.Phase.EXECUTED) {
+            invalidateAll();
+        }
+    }
+    //endregion
+
+    //region  >  (injected)
+    @Inject
+    ApplicationPermissionRepository applicationPermissionRepository;
+
+    @Inject
+    EventBusService eventBusService;
+
+    @Inject
+    TransactionCompletionCallbacks transactionCompletionCallbacks;
+
+    /**
+     * Optional service, if configured then is used to evaluate permissions within the compiled
+     * {@link ApplicationPermissionValueSet}s, else will fallback to a
+     * {@link PermissionsEvaluationService#DEFAULT default} implementation.
+     */
+    @Inject
+    PermissionsEvaluationService permissionsEvaluationService;
+    //endregion
+
+}
@@ -18,6 +18,7 @@
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.List;
 
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
@@ -46,4 +47,38 @@ ApplicationPermissionValueSet.Evaluation evaluate(
             final ApplicationPermissionMode mode,
             final Collection<ApplicationPermissionValue> permissionValues);
 
+    /**
+     * Optional SPI, allowing an implementation to order the permissions of each feature just once (when the
+     * {@link ApplicationPermissionValueSet} is created) rather than on every evaluation.
+     *
+     * <p>
+     *     If the configured service implements this interface, then {@link #evaluatePreOrdered(ApplicationFeatureId, ApplicationPermissionMode, List)}
+     *     is called in place of {@link #evaluate(ApplicationFeatureId, ApplicationPermissionMode, Collection)}.  The
+     *     framework-provided implementations ({@link PermissionsEvaluationServiceAllowBeatsVeto} and
+     *     {@link PermissionsEvaluationServiceVetoBeatsAllow}) both do so, though any subclass of these is evaluated
+     *     through {@link #evaluate(ApplicationFeatureId, ApplicationPermissionMode, Collection)}, in case it has been
+     *     overridden.
+     * </p>
+     */
+    interface PreOrdering extends PermissionsEvaluationService {
+
+        /**
+         * @param permissionValues - permissions of a single feature, in natural order, as per {@link org.isisaddons.module.security.dom.permission.ApplicationPermissionValue.Comparators#natural()}.
+         * @return the same permissions, in the order that they should be evaluated.
+         */
+        @Programmatic
+        List<ApplicationPermissionValue> preOrdered(
+                final Collection<ApplicationPermissionValue> permissionValues);
+
+        /**
+         * As per {@link #evaluate(ApplicationFeatureId, ApplicationPermissionMode, Collection)}, but with the permissions
+         * already {@link #preOrdered(Collection) pre-ordered}.
+         */
+        @Programmatic
+        ApplicationPermissionValueSet.Evaluation evaluatePreOrdered(
+                final ApplicationFeatureId targetMemberId,
+                final ApplicationPermissionMode mode,
+                final List<ApplicationPermissionValue> preOrderedPermissionValues);
+    }
+
 }
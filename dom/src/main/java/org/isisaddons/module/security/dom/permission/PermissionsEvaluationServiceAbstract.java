@@ -17,6 +17,9 @@
 package org.isisaddons.module.security.dom.permission;
 
 import java.util.Collection;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
 
 import org.apache.isis.applib.annotation.Programmatic;
 import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
@@ -29,10 +32,26 @@ public ApplicationPermissionValueSet.Evaluation evaluate(
             final ApplicationFeatureId targetMemberId,
             final ApplicationPermissionMode mode,
             final Collection<ApplicationPermissionValue> permissionValues) {
+        return evaluatePreOrdered(targetMemberId, mode, preOrdered(permissionValues));
+    }
+
+    /**
+     * Supports the framework-provided implementations' opt-in to {@link PermissionsEvaluationService.PreOrdering}.
+     */
+    @Programmatic
+    public List<ApplicationPermissionValue> preOrdered(final Collection<ApplicationPermissionValue> permissionValues) {
+        return ImmutableList.copyOf(ordered(permissionValues));
+    }
 
-        final Iterable<ApplicationPermissionValue> ordered = ordered(permissionValues);
+    @Programmatic
+    public ApplicationPermissionValueSet.Evaluation evaluatePreOrdered(
+            final ApplicationFeatureId targetMemberId,
+            final ApplicationPermissionMode mode,
+            final List<ApplicationPermissionValue> preOrderedPermissionValues) {
 
-        for (final ApplicationPermissionValue permissionValue : ordered) {
+        // indexed rather than iterator-based, to avoid allocating on every evaluation
+        for (int i = 0, size = preOrderedPermissionValues.size(); i < size; i++) {
+            final ApplicationPermissionValue permissionValue = preOrderedPermissionValues.get(i);
             if(permissionValue.implies(targetMemberId, mode)) {
                 return new ApplicationPermissionValueSet.Evaluation(permissionValue, true);
             } else if(permissionValue.refutes(targetMemberId, mode)) {
@@ -21,7 +21,7 @@
 /**
  * An implementation whereby a VETO permission for a feature overrides an ALLOW (for same scope).
  */
-public class PermissionsEvaluationServiceAllowBeatsVeto extends PermissionsEvaluationServiceAbstract {
+public class PermissionsEvaluationServiceAllowBeatsVeto extends PermissionsEvaluationServiceAbstract implements PermissionsEvaluationService.PreOrdering {
 
     /**
      * Returns the lists unchanged.
@@ -24,7 +24,7 @@
 /**
  * An implementation whereby a VETO permission for a feature overrides an ALLOW (for same scope).
  */
-public class PermissionsEvaluationServiceVetoBeatsAllow extends PermissionsEvaluationServiceAbstract {
+public class PermissionsEvaluationServiceVetoBeatsAllow extends PermissionsEvaluationServiceAbstract implements PermissionsEvaluationService.PreOrdering {
 
     /**
      * Reverses the natural order of the {@link org.isisaddons.module.security.dom.permission.ApplicationPermissionValue}s.
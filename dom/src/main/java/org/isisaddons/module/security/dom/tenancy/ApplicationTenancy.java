@@ -187,10 +187,12 @@ public List<ApplicationUser> getUsers() {
     // necessary for integration tests
     public void addToUsers(final ApplicationUser applicationUser) {
         applicationUser.setAtPath(getPath());
+        applicationUser.invalidateTenancy();
     }
     // necessary for integration tests
     public void removeFromUsers(final ApplicationUser applicationUser) {
         applicationUser.setAtPath(null);
+        applicationUser.invalidateTenancy();
     }
     //endregion
 
@@ -208,6 +210,7 @@ public static class AddUserDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name="Users", sequence = "1")
     public ApplicationTenancy addUser(final ApplicationUser applicationUser) {
         applicationUser.setAtPath(this.getPath());
+        applicationUser.invalidateTenancy();
         // no need to add to users set, since will be done by JDO/DN.
         return this;
     }
@@ -237,6 +240,7 @@ public static class RemoveUserDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name="Users", sequence = "2")
     public ApplicationTenancy removeUser(final ApplicationUser applicationUser) {
         applicationUser.setAtPath(null);
+        applicationUser.invalidateTenancy();
         // no need to add to users set, since will be done by JDO/DN.
         return this;
     }
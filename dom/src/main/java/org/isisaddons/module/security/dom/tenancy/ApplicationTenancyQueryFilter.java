@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.tenancy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.jdo.Query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * A JDOQL filter that restricts a query of {@link HasAtPath} entities to those visible to a user with a given
+ * tenancy path, as per the rules of path-based tenancy (see the table in {@link HasAtPath}): untenanted objects, and
+ * objects whose path is the same as, below or above the user's.  Paths are matched on whole segments, so a user at
+ * <tt>/uk</tt> does not see objects at <tt>/ukraine</tt>.
+ *
+ * <p>
+ *     This allows repositories to fetch only those rows that the user can see, rather than loading every row and
+ *     then having the <tt>TenantedAuthorizationFacet</tt> hide those that are not visible (which still acts as a
+ *     safety net).  It assumes that paths are stored in canonical form (eg <tt>/uk/london</tt>, without a trailing
+ *     <tt>/</tt>), and is only appropriate if tenancy is evaluated using the paths (rather than some custom
+ *     {@link ApplicationTenancyEvaluator}).
+ * </p>
+ *
+ * <p>
+ *     Typically obtained from {@link HasAtPathRepository#filterForCurrentUser()}, and applied using:
+ * </p>
+ * <pre>
+ *     final Query query = persistenceManager.newQuery(ToDoItem.class);
+ *     final List&lt;ToDoItem&gt; items = filter.execute(query);
+ * </pre>
+ */
+public final class ApplicationTenancyQueryFilter {
+
+    /**
+     * The name of the (persistent) member of {@link HasAtPath} entities that holds their path, by convention.
+     */
+    public static final String DEFAULT_AT_PATH_MEMBER = "atPath";
+
+    static final String PARAM_PATH = "tenancyPath";
+    static final String PARAM_PATH_PREFIX = "tenancyPathPrefix";
+    static final String PARAM_PATH_ANCESTORS = "tenancyPathAncestors";
+
+    /**
+     * Filter for a user with the specified tenancy path, assuming that the entity's path is held in its
+     * {@link #DEFAULT_AT_PATH_MEMBER <tt>atPath</tt>} member.
+     *
+     * @param userAtPath - <tt>null</tt> if the user has no tenancy (so can see only untenanted objects).
+     */
+    public static ApplicationTenancyQueryFilter visibleTo(final String userAtPath) {
+        return visibleTo(userAtPath, DEFAULT_AT_PATH_MEMBER);
+    }
+
+    /**
+     * @param userAtPath - <tt>null</tt> if the user has no tenancy (so can see only untenanted objects).
+     * @param atPathMember - the name of the entity's (persistent) member that holds its path.
+     */
+    public static ApplicationTenancyQueryFilter visibleTo(final String userAtPath, final String atPathMember) {
+        if(userAtPath == null) {
+            return new ApplicationTenancyQueryFilter(
+                    atPathMember + " == null", null, Collections.<String, Object>emptyMap());
+        }
+        final List<String> segments = segmentsOf(userAtPath);
+        if(segments.isEmpty()) {
+            // the root tenancy sees everything
+            return new ApplicationTenancyQueryFilter(null, null, Collections.<String, Object>emptyMap());
+        }
+        final List<String> ancestors = Lists.newArrayList();
+        final StringBuilder buf = new StringBuilder();
+        ancestors.add("/");
+        for (int i = 0; i < segments.size() - 1; i++) {
+            buf.append('/').append(segments.get(i));
+            ancestors.add(buf.toString());
+        }
+        buf.append('/').append(segments.get(segments.size() - 1));
+        final String path = buf.toString();
+
+        final String filter = "(" +
+                atPathMember + " == null || " +
+                atPathMember + " == :" + PARAM_PATH + " || " +
+                atPathMember + ".startsWith(:" + PARAM_PATH_PREFIX + ") || " +
+                ":" + PARAM_PATH_ANCESTORS + ".contains(" + atPathMember + "))";
+        final String parameterDeclarations =
+                "String " + PARAM_PATH + ", " +
+                "String " + PARAM_PATH_PREFIX + ", " +
+                "java.util.Collection " + PARAM_PATH_ANCESTORS;
+        final Map<String, Object> parameters = ImmutableMap.<String, Object>of(
+                PARAM_PATH, path,
+                PARAM_PATH_PREFIX, path + "/",
+                PARAM_PATH_ANCESTORS, ImmutableList.copyOf(ancestors));
+        return new ApplicationTenancyQueryFilter(filter, parameterDeclarations, parameters);
+    }
+
+    /**
+     * A filter that matches nothing, eg if the user cannot be found.
+     */
+    public static ApplicationTenancyQueryFilter none(final String atPathMember) {
+        return new ApplicationTenancyQueryFilter(
+                "(" + atPathMember + " == null && " + atPathMember + " != null)",
+                null, Collections.<String, Object>emptyMap());
+    }
+
+    private static List<String> segmentsOf(final String path) {
+        final List<String> segments = Lists.newArrayList();
+        for (final String segment : path.split("/")) {
+            if(!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    private final String filter;
+    private final String parameterDeclarations;
+    private final Map<String, Object> parameters;
+
+    private ApplicationTenancyQueryFilter(
+            final String filter,
+            final String parameterDeclarations,
+            final Map<String, Object> parameters) {
+        this.filter = filter;
+        this.parameterDeclarations = parameterDeclarations;
+        this.parameters = parameters;
+    }
+
+    /**
+     * The JDOQL filter, to be combined (using <tt>&amp;&amp;</tt>) with any other filter of the query; <tt>null</tt>
+     * if no filtering is required.
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * The JDOQL declarations of the {@link #getParameters() parameters} referenced by the {@link #getFilter() filter};
+     * <tt>null</tt> if none.
+     */
+    public String getParameterDeclarations() {
+        return parameterDeclarations;
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the filter (and parameters) of a query that has no other filter, and executes it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> execute(final Query query) {
+        if(filter != null) {
+            query.setFilter(filter);
+        }
+        if(parameterDeclarations != null) {
+            query.declareParameters(parameterDeclarations);
+        }
+        return Lists.newArrayList((List<T>) query.executeWithMap(parameters));
+    }
+
+}
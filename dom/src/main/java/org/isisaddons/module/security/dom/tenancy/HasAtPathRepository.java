@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.tenancy;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.jdosupport.IsisJdoSupport;
+import org.apache.isis.applib.services.user.UserService;
+
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancy;
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancyCache;
+
+/**
+ * Queries {@link HasAtPath} entities, fetching only those that the current user is permitted to see (per
+ * {@link ApplicationTenancyQueryFilter}).
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class HasAtPathRepository {
+
+    //region > filterForCurrentUser
+
+    /**
+     * The filter for the current user, assuming that entities hold their path in an <tt>atPath</tt> member.
+     */
+    @Programmatic
+    public ApplicationTenancyQueryFilter filterForCurrentUser() {
+        return filterForCurrentUser(ApplicationTenancyQueryFilter.DEFAULT_AT_PATH_MEMBER);
+    }
+
+    @Programmatic
+    public ApplicationTenancyQueryFilter filterForCurrentUser(final String atPathMember) {
+        final String username = userService.getUser().getName();
+        final ApplicationUserTenancy userTenancy = applicationUserTenancyCache.tenancyFor(username);
+        if(userTenancy == null) {
+            return ApplicationTenancyQueryFilter.none(atPathMember);
+        }
+        return ApplicationTenancyQueryFilter.visibleTo(userTenancy.getAtPath(), atPathMember);
+    }
+    //endregion
+
+    //region > allVisibleToCurrentUser
+
+    /**
+     * All instances of the entity that are visible to the current user.
+     */
+    @Programmatic
+    public <T extends HasAtPath> List<T> allVisibleToCurrentUser(final Class<T> cls) {
+        final PersistenceManager persistenceManager = isisJdoSupport.getJdoPersistenceManager();
+        final Query query = persistenceManager.newQuery(cls);
+        try {
+            return filterForCurrentUser().execute(query);
+        } finally {
+            query.closeAll();
+        }
+    }
+    //endregion
+
+    //region  >  (injected)
+    @Inject
+    ApplicationUserTenancyCache applicationUserTenancyCache;
+    @Inject
+    UserService userService;
+    @Inject
+    IsisJdoSupport isisJdoSupport;
+    //endregion
+
+}
@@ -63,12 +63,14 @@
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionRepository;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSetCache;
 import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.role.ApplicationRoleRepository;
 import org.isisaddons.module.security.dom.tenancy.HasAtPath;
 import org.isisaddons.module.security.seed.scripts.IsisModuleSecurityAdminRoleAndPermissions;
 import org.isisaddons.module.security.seed.scripts.IsisModuleSecurityAdminUser;
+import org.isisaddons.module.security.shiro.IsisModuleSecurityRealmInvalidator;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -508,12 +510,24 @@ public ApplicationUser updateAtPath(
             @ParameterLayout(named = "AtPath")
             final String atPath) {
         setAtPath(atPath);
+        invalidateTenancy();
         return this;
     }
 
     public String default0UpdateAtPath() {
         return getAtPath();
     }
+
+    /**
+     * Discards the {@link ApplicationUserTenancyCache cached} tenancy of this user; to be called whenever its
+     * {@link #getAtPath() atPath} or {@link #getStatus() status} is changed.
+     */
+    @Programmatic
+    public void invalidateTenancy() {
+        if(applicationUserTenancyCache != null) {
+            applicationUserTenancyCache.invalidate(getUsername());
+        }
+    }
     //endregion
 
     //region > accountType (property)
@@ -593,6 +607,7 @@ public static class UnlockDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name = "Status", sequence = "1")
     public ApplicationUser unlock() {
         setStatus(ApplicationUserStatus.ENABLED);
+        invalidateTenancy();
         return this;
     }
     public String disableUnlock() {
@@ -613,6 +628,7 @@ public static class LockDomainEvent extends ActionDomainEvent {}
     @MemberOrder(name = "Status", sequence = "2")
     public ApplicationUser lock() {
         setStatus(ApplicationUserStatus.DISABLED);
+        invalidateTenancy();
         return this;
     }
     public String disableLock() {
@@ -721,6 +737,9 @@ public void updatePassword(final String password) {
         }
         final String encryptedPassword = passwordEncryptionService.encrypt(password);
         setEncryptedPassword(encryptedPassword);
+        if(isisModuleSecurityRealmInvalidator != null) {
+            isisModuleSecurityRealmInvalidator.invalidateCredentials(getUsername());
+        }
     }
 
     //endregion
@@ -895,6 +914,10 @@ public ApplicationPermissionValueSet getPermissionSet() {
         if(cachedPermissionSet != null) {
             return cachedPermissionSet;
         }
+        if(applicationPermissionValueSetCache != null) {
+            // composed from the (cross-request) compiled permission sets of each role
+            return cachedPermissionSet = applicationPermissionValueSetCache.permissionSetFor(getRoles());
+        }
         final List<ApplicationPermission> permissions = applicationPermissionRepository.findByUser(this);
         return cachedPermissionSet =
                 new ApplicationPermissionValueSet(
@@ -969,9 +992,15 @@ public String toString() {
     @javax.inject.Inject
     ApplicationPermissionRepository applicationPermissionRepository;
     @javax.inject.Inject
+    ApplicationPermissionValueSetCache applicationPermissionValueSetCache;
+    @javax.inject.Inject
     PasswordEncryptionService passwordEncryptionService;
     @javax.inject.Inject
     DomainObjectContainer container;
+    @javax.inject.Inject
+    IsisModuleSecurityRealmInvalidator isisModuleSecurityRealmInvalidator;
+    @javax.inject.Inject
+    ApplicationUserTenancyCache applicationUserTenancyCache;
 
     /**
      * Optional service, if configured then is used to evaluate permissions within
@@ -36,6 +36,7 @@
 import org.isisaddons.module.security.dom.password.PasswordEncryptionService;
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.role.ApplicationRoleRepository;
+import org.isisaddons.module.security.shiro.IsisModuleSecurityRealmInvalidator;
 
 @SuppressWarnings("UnusedDeclaration")
 @DomainService(
@@ -137,6 +138,8 @@ public ApplicationUser newDelegateUser(
             user.addRole(initialRole);
         }
         container.persistIfNotAlready(user);
+        invalidateCredentials(username);
+        invalidateTenancy(username);
         return user;
     }
     //endregion
@@ -168,9 +171,29 @@ public ApplicationUser newLocalUser(
             user.updateEmailAddress(emailAddress);
         }
         container.persistIfNotAlready(user);
+        invalidateCredentials(username);
+        invalidateTenancy(username);
         return user;
     }
 
+    /**
+     * So that the realm no longer remembers this username as unknown (if it had been presented before the user was created).
+     */
+    private void invalidateCredentials(final String username) {
+        if (isisModuleSecurityRealmInvalidator != null) {
+            isisModuleSecurityRealmInvalidator.invalidateCredentials(username);
+        }
+    }
+
+    /**
+     * So that the tenancy of the user is not taken from a snapshot cached before it was (re)created.
+     */
+    private void invalidateTenancy(final String username) {
+        if (applicationUserTenancyCache != null) {
+            applicationUserTenancyCache.invalidate(username);
+        }
+    }
+
     @Programmatic
     public String validateNewLocalUser(
             final String username,
@@ -256,6 +279,10 @@ private ApplicationUserFactory getApplicationUserFactory() {
 
     @Inject
     DomainObjectContainer container;
+    @Inject
+    IsisModuleSecurityRealmInvalidator isisModuleSecurityRealmInvalidator;
+    @Inject
+    ApplicationUserTenancyCache applicationUserTenancyCache;
 
     //endregion
 
@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.user;
+
+/**
+ * Immutable snapshot of those details of an {@link ApplicationUser} that are needed to evaluate tenancy, so that
+ * they can be {@link ApplicationUserTenancyCache cached} across requests (unlike the entity itself).
+ */
+public final class ApplicationUserTenancy {
+
+    public static ApplicationUserTenancy of(final ApplicationUser applicationUser) {
+        if(applicationUser == null) {
+            return null;
+        }
+        return new ApplicationUserTenancy(
+                applicationUser.getUsername(), applicationUser.getAtPath(), applicationUser.getStatus());
+    }
+
+    private final String username;
+    private final String atPath;
+    private final ApplicationUserStatus status;
+
+    public ApplicationUserTenancy(final String username, final String atPath, final ApplicationUserStatus status) {
+        this.username = username;
+        this.atPath = atPath;
+        this.status = status;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getAtPath() {
+        return atPath;
+    }
+
+    public ApplicationUserStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return username + " @ " + atPath + " (" + status + ")";
+    }
+}
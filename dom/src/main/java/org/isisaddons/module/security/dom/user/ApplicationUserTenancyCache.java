@@ -0,0 +1,200 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.user;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.Subscribe;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.AbstractDomainEvent;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+
+import org.isisaddons.module.security.dom.TransactionCompletionCallbacks;
+
+/**
+ * Holds an immutable {@link ApplicationUserTenancy} for each user, looked up once from
+ * {@link ApplicationUserRepository#findByUsername(String)} and then shared across requests, so that evaluating the
+ * tenancy of the objects rendered in a request does not (in the steady state) require the user to be queried.
+ *
+ * <p>
+ *     A user's entry is discarded whenever its tenancy or status is changed through
+ *     {@link ApplicationUser#updateAtPath(String)}, {@link ApplicationUser#lock()} or {@link ApplicationUser#unlock()},
+ *     or through {@link org.isisaddons.module.security.dom.tenancy.ApplicationTenancy#addUser(ApplicationUser)} or
+ *     {@link org.isisaddons.module.security.dom.tenancy.ApplicationTenancy#removeUser(ApplicationUser)} (whether
+ *     invoked through the UI or programmatically), or if the user is (re)created through the
+ *     {@link ApplicationUserRepository}; and all entries are discarded if any user is renamed or
+ *     deleted.  Since these changes are made before the transaction commits, entries are discarded once more after
+ *     it completes.  Because other nodes of a cluster are not notified of such changes, entries also expire after a
+ *     configurable time-to-live.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class ApplicationUserTenancyCache {
+
+    public static final String KEY_TIME_TO_LIVE_SECONDS = "isis.services.ApplicationUserTenancyCache.timeToLiveSeconds";
+    public static final int DEFAULT_TIME_TO_LIVE_SECONDS = 600;
+
+    public static final String KEY_MAXIMUM_SIZE = "isis.services.ApplicationUserTenancyCache.maximumSize";
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    //region > init, shutdown
+
+    @Programmatic
+    @PostConstruct
+    public void init(final Map<String, String> properties) {
+        final int timeToLiveSeconds = intProperty(properties, KEY_TIME_TO_LIVE_SECONDS, DEFAULT_TIME_TO_LIVE_SECONDS);
+        final int maximumSize = intProperty(properties, KEY_MAXIMUM_SIZE, DEFAULT_MAXIMUM_SIZE);
+        tenancyByUsername = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .build();
+        eventBusService.register(this);
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+
+    private static int intProperty(final Map<String, String> properties, final String key, final int defaultValue) {
+        final String value = properties != null ? properties.get(key) : null;
+        return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    //endregion
+
+    //region > tenancyFor (programmatic)
+
+    private volatile Cache<String, ApplicationUserTenancy> tenancyByUsername =
+            CacheBuilder.newBuilder()
+                    .expireAfterWrite(DEFAULT_TIME_TO_LIVE_SECONDS, TimeUnit.SECONDS)
+                    .maximumSize(DEFAULT_MAXIMUM_SIZE)
+                    .build();
+
+    /**
+     * Incremented on every invalidation, so that a snapshot looked up concurrently from stale data is not then cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The (cached) tenancy of the user, or <tt>null</tt> if there is no such user (which is not cached).
+     */
+    @Programmatic
+    public ApplicationUserTenancy tenancyFor(final String username) {
+        if(username == null) {
+            return null;
+        }
+        final Cache<String, ApplicationUserTenancy> tenancyByUsername = this.tenancyByUsername;
+        final ApplicationUserTenancy tenancy = tenancyByUsername.getIfPresent(username);
+        if(tenancy != null) {
+            return tenancy;
+        }
+        final long generationBefore = generation.get();
+        final ApplicationUserTenancy newTenancy =
+                ApplicationUserTenancy.of(applicationUserRepository.findByUsername(username));
+        if(newTenancy == null || generation.get() != generationBefore) {
+            return newTenancy;
+        }
+        final ApplicationUserTenancy existingTenancy = tenancyByUsername.asMap().putIfAbsent(username, newTenancy);
+        return existingTenancy != null ? existingTenancy : newTenancy;
+    }
+    //endregion
+
+    //region > invalidate, invalidateAll (programmatic)
+
+    /**
+     * Discards the user's entry, both immediately and once more after the current transaction completes (in case
+     * it was looked up again by a concurrent request from the pre-commit data in the meantime).
+     */
+    @Programmatic
+    public void invalidate(final String username) {
+        if(username == null) {
+            return;
+        }
+        invalidateNowAndAfterCompletion(new Runnable() {
+            @Override
+            public void run() {
+                tenancyByUsername.invalidate(username);
+                generation.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * As {@link #invalidate(String)}, but for all users.
+     */
+    @Programmatic
+    public void invalidateAll() {
+        invalidateNowAndAfterCompletion(doInvalidateAll);
+    }
+
+    private final Runnable doInvalidateAll = new Runnable() {
+        @Override
+        public void run() {
+            tenancyByUsername.invalidateAll();
+            generation.incrementAndGet();
+        }
+    };
+
+    private void invalidateNowAndAfterCompletion(final Runnable invalidation) {
+        invalidation.run();
+        if(transactionCompletionCallbacks != null) {
+            transactionCompletionCallbacks.afterCompletion(invalidation);
+        }
+    }
+    //endregion
+
+    //region > on (event bus subscriptions)
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationUser.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTED) {
+            return;
+        }
+        if(ev instanceof ApplicationUser.UpdateUsernameDomainEvent || ev instanceof ApplicationUser.DeleteDomainEvent) {
+            invalidateAll();
+        }
+    }
+    //endregion
+
+    //region  >  (injected)
+    @Inject
+    ApplicationUserRepository applicationUserRepository;
+
+    @Inject
+    EventBusService eventBusService;
+
+    @Inject
+    TransactionCompletionCallbacks transactionCompletionCallbacks;
+    //endregion
+
+}
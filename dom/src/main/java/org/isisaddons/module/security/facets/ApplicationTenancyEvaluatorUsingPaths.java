@@ -20,15 +20,28 @@
 
 import javax.inject.Inject;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import org.apache.isis.applib.services.queryresultscache.QueryResultsCache;
 
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyEvaluator;
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyPathEvaluator;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancy;
 
 class ApplicationTenancyEvaluatorUsingPaths implements ApplicationTenancyEvaluator {
 
     private final ApplicationTenancyPathEvaluator evaluator;
+    private final ApplicationTenancyPathTrie pathTrie = ApplicationTenancyPathTrie.INSTANCE;
+
+    /**
+     * The trie node of each user's tenancy path, resolved once per {@link ApplicationUserTenancy snapshot} (which are
+     * themselves cached across requests) rather than once per check; keyed weakly, by identity.
+     */
+    private final Cache<ApplicationUserTenancy, ApplicationTenancyPathTrie.Node> userTenancyNodeBySnapshot =
+            CacheBuilder.newBuilder().weakKeys().build();
+
     ApplicationTenancyEvaluatorUsingPaths(final ApplicationTenancyPathEvaluator pathEvaluator) {
         this.evaluator = pathEvaluator;
     }
@@ -38,6 +51,17 @@ public boolean handles(Class<?> cls) {
         return evaluator.handles(cls);
     }
 
+    /**
+     * Whether the tenancy of the user can be determined from its {@link ApplicationUserTenancy snapshot} alone (that
+     * is, from its {@link ApplicationUser#getAtPath() atPath}), rather than the path evaluator having to be consulted
+     * with the {@link ApplicationUser} entity itself.  This is the case for the default path evaluator (which simply
+     * returns that <tt>atPath</tt>), or for any path evaluator that does not handle users.
+     */
+    boolean handlesUserTenancy() {
+        return evaluator instanceof TenantedAuthorizationFacetFactory.ApplicationTenancyPathEvaluatorDefault ||
+                !evaluator.handles(ApplicationUser.class);
+    }
+
     @Override
     public String hides(Object domainObject, ApplicationUser applicationUser) {
 
@@ -49,6 +73,33 @@ public String hides(Object domainObject, ApplicationUser applicationUser) {
 
         // eg /x  or /x/y/z
         String userTenancyPath = userTenancyPathForCached(applicationUser);
+        return hides(objectTenancyPath, userTenancyPath);
+    }
+
+    /**
+     * As {@link #hides(Object, ApplicationUser)}, but using the user's {@link ApplicationUserTenancy snapshot}; only
+     * applicable if {@link #handlesUserTenancy()}.
+     */
+    String hides(Object domainObject, ApplicationUserTenancy userTenancy) {
+
+        String objectTenancyPath = applicationTenancyPathForCached(domainObject);
+        if (objectTenancyPath == null) {
+            return null;
+        }
+
+        String userTenancyPath = userTenancy.getAtPath();
+        if (userTenancyPath == null) {
+            return "User has no tenancy";
+        }
+
+        if (pathTrie.nodeFor(objectTenancyPath).isInSameHierarchyAs(userTenancyNodeFor(userTenancy))) {
+            return null;
+        }
+
+        return notPermittedToView(objectTenancyPath, userTenancyPath);
+    }
+
+    private String hides(String objectTenancyPath, String userTenancyPath) {
         if (userTenancyPath == null) {
             return "User has no tenancy";
         }
@@ -57,6 +108,10 @@ public String hides(Object domainObject, ApplicationUser applicationUser) {
             return null;
         }
 
+        return notPermittedToView(objectTenancyPath, userTenancyPath);
+    }
+
+    private static String notPermittedToView(String objectTenancyPath, String userTenancyPath) {
         // it's ok to return this info, because it isn't actually rendered (helpful if debugging)
         return String.format(
                 "User with tenancy '%s' is not permitted to view object with tenancy '%s'",
@@ -75,6 +130,33 @@ public String disables(Object domainObject, ApplicationUser applicationUser) {
 
         // eg /x  or /x/y/z
         String userTenancyPath = userTenancyPathForCached(applicationUser);
+        return disables(objectTenancyPath, userTenancyPath);
+    }
+
+    /**
+     * As {@link #disables(Object, ApplicationUser)}, but using the user's {@link ApplicationUserTenancy snapshot};
+     * only applicable if {@link #handlesUserTenancy()}.
+     */
+    String disables(Object domainObject, ApplicationUserTenancy userTenancy) {
+
+        String objectTenancyPath = applicationTenancyPathForCached(domainObject);
+        if (objectTenancyPath == null) {
+            return null;
+        }
+
+        String userTenancyPath = userTenancy.getAtPath();
+        if (userTenancyPath == null) {
+            return "User has no tenancy";
+        }
+
+        if (pathTrie.nodeFor(objectTenancyPath).isSameOrDescendantOf(userTenancyNodeFor(userTenancy))) {
+            return null;
+        }
+
+        return notPermittedToEdit(objectTenancyPath, userTenancyPath);
+    }
+
+    private String disables(String objectTenancyPath, String userTenancyPath) {
         if (userTenancyPath == null) {
             return "User has no tenancy";
         }
@@ -83,19 +165,37 @@ public String disables(Object domainObject, ApplicationUser applicationUser) {
             return null;
         }
 
+        return notPermittedToEdit(objectTenancyPath, userTenancyPath);
+    }
+
+    private static String notPermittedToEdit(String objectTenancyPath, String userTenancyPath) {
         return String.format(
                 "User with tenancy '%s' is not permitted to edit object with tenancy '%s'",
                 userTenancyPath,
                 objectTenancyPath);
     }
 
+    private ApplicationTenancyPathTrie.Node userTenancyNodeFor(final ApplicationUserTenancy userTenancy) {
+        final ApplicationTenancyPathTrie.Node node = userTenancyNodeBySnapshot.getIfPresent(userTenancy);
+        if (node != null) {
+            return node;
+        }
+        final ApplicationTenancyPathTrie.Node newNode = pathTrie.nodeFor(userTenancy.getAtPath());
+        userTenancyNodeBySnapshot.put(userTenancy, newNode);
+        return newNode;
+    }
+
     /**
      * Protected visibility so can be overridden if required, eg using wildcard matches.
+     *
+     * <p>
+     *     The paths are compared segment by segment (using an {@link ApplicationTenancyPathTrie interned trie}), so
+     *     that <tt>/uk</tt> and <tt>/ukraine</tt> are not considered to be in the same hierarchy.
+     * </p>
      */
     protected boolean objectVisibleToUser(String objectTenancyPath, String userTenancyPath) {
         // if in "same hierarchy"
-        return objectTenancyPath.startsWith(userTenancyPath) ||
-                userTenancyPath.startsWith(objectTenancyPath);
+        return pathTrie.nodeFor(objectTenancyPath).isInSameHierarchyAs(pathTrie.nodeFor(userTenancyPath));
     }
 
 
@@ -104,7 +204,7 @@ protected boolean objectVisibleToUser(String objectTenancyPath, String userTenan
      */
     protected boolean objectEnabledForUser(String objectTenancyPath, String userTenancyPath) {
         // if user's tenancy "above" object's tenancy in the hierarchy
-        return objectTenancyPath.startsWith(userTenancyPath);
+        return pathTrie.nodeFor(objectTenancyPath).isSameOrDescendantOf(pathTrie.nodeFor(userTenancyPath));
     }
 
     /**
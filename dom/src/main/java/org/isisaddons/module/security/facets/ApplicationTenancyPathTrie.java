@@ -0,0 +1,193 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.facets;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Interns tenancy paths (such as <tt>/uk/london</tt>) as the nodes of a trie of their <tt>/</tt>-separated
+ * segments, mirroring the parent/child hierarchy of {@link org.isisaddons.module.security.dom.tenancy.ApplicationTenancy}s.
+ *
+ * <p>
+ *     Whether one path is in the same hierarchy as (or "above") another is then a matter of walking up from the
+ *     deeper of the two nodes to the depth of the other, and comparing them by identity: no string scanning, and
+ *     honouring segment boundaries (so that <tt>/uk</tt> is not mistaken for an ancestor of <tt>/ukraine</tt>).
+ *     Empty segments are ignored, so <tt>/uk/</tt> is the same path as <tt>/uk</tt>, and <tt>/</tt> is the root.
+ * </p>
+ *
+ * <p>
+ *     Lookups of a previously seen path are lock-free; only the interning of a new segment is synchronized.
+ * </p>
+ *
+ * <p>
+ *     Memory is bounded: each node holds its children only weakly (so a node is discarded once neither it nor any of
+ *     its descendants is referenced), and only the most recently used {@link #MAXIMUM_CACHED_PATHS} paths are
+ *     cached, keyed by their normalised form.
+ * </p>
+ */
+final class ApplicationTenancyPathTrie {
+
+    static final ApplicationTenancyPathTrie INSTANCE = new ApplicationTenancyPathTrie();
+
+    static final int MAXIMUM_CACHED_PATHS = 10000;
+
+    static final class Node {
+        private final Node parent;
+        private final String segment;
+        private final int depth;
+        /**
+         * Weakly held; a node holds its parent strongly, so a node is retained for as long as any descendant is.
+         */
+        private final ConcurrentMap<String, Node> children = new MapMaker().concurrencyLevel(1).weakValues().makeMap();
+
+        private Node(final Node parent, final String segment) {
+            this.parent = parent;
+            this.segment = segment;
+            this.depth = parent != null ? parent.depth + 1 : 0;
+        }
+
+        int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Whether this node is the same as, or a descendant of, the other.
+         */
+        boolean isSameOrDescendantOf(final Node other) {
+            Node node = this;
+            while(node.depth > other.depth) {
+                node = node.parent;
+            }
+            return node == other;
+        }
+
+        /**
+         * Whether either of the nodes is the same as, or a descendant of, the other.
+         */
+        boolean isInSameHierarchyAs(final Node other) {
+            return depth >= other.depth ? isSameOrDescendantOf(other) : other.isSameOrDescendantOf(this);
+        }
+
+        @Override
+        public String toString() {
+            return parent == null ? "/" : parent.parent == null ? "/" + segment : parent + "/" + segment;
+        }
+    }
+
+    private final Node root = new Node(null, null);
+
+    /**
+     * Keyed by {@link #normalise(String) normalised} path.
+     */
+    private final Cache<String, Node> nodeByPath = CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHED_PATHS).build();
+
+    ApplicationTenancyPathTrie() {
+    }
+
+    /**
+     * Looked up by the path as is; only normalised (and then looked up again) if not found, since paths are normally
+     * already in normalised form.
+     */
+    Node nodeFor(final String path) {
+        final Node node = nodeByPath.getIfPresent(path);
+        if(node != null) {
+            return node;
+        }
+        final String normalisedPath = normalise(path);
+        if(normalisedPath != path) {
+            final Node normalisedNode = nodeByPath.getIfPresent(normalisedPath);
+            if(normalisedNode != null) {
+                return normalisedNode;
+            }
+        }
+        final Node newNode = intern(normalisedPath);
+        nodeByPath.put(normalisedPath, newNode);
+        return newNode;
+    }
+
+    long cachedPathCount() {
+        return nodeByPath.size();
+    }
+
+    private Node intern(final String normalisedPath) {
+        Node node = root;
+        for (final String segment : normalisedPath.split("/")) {
+            if(segment.isEmpty()) {
+                continue;
+            }
+            node = childOf(node, segment);
+        }
+        return node;
+    }
+
+    /**
+     * The path with a leading <tt>/</tt>, and without any empty segments (nor a trailing <tt>/</tt>, except for the
+     * root itself); returned as is (without allocating) if already normalised.
+     */
+    static String normalise(final String path) {
+        if(isNormalised(path)) {
+            return path;
+        }
+        final StringBuilder buf = new StringBuilder(path.length() + 1);
+        for (final String segment : path.split("/")) {
+            if(!segment.isEmpty()) {
+                buf.append('/').append(segment);
+            }
+        }
+        return buf.length() > 0 ? buf.toString() : "/";
+    }
+
+    private static boolean isNormalised(final String path) {
+        final int length = path.length();
+        if(length == 0 || path.charAt(0) != '/') {
+            return false;
+        }
+        if(length == 1) {
+            return true;
+        }
+        if(path.charAt(length - 1) == '/') {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if(path.charAt(i) == '/' && path.charAt(i - 1) == '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Node childOf(final Node parent, final String segment) {
+        final Node child = parent.children.get(segment);
+        if(child != null) {
+            return child;
+        }
+        synchronized (parent) {
+            final Node existingChild = parent.children.get(segment);
+            if(existingChild != null) {
+                return existingChild;
+            }
+            final Node newChild = new Node(parent, segment);
+            parent.children.put(segment, newChild);
+            return newChild;
+        }
+    }
+
+}
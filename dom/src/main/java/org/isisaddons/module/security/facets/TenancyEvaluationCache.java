@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.facets;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.enterprise.context.RequestScoped;
+
+import com.google.common.collect.Maps;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+
+/**
+ * Request-scoped memo of the outcome of tenancy evaluation for each domain object, so that the
+ * {@link TenantedAuthorizationFacetDefault} evaluates each distinct object only once per request, rather than once
+ * for every one of its members that is rendered (eg for every column of every row of a table).
+ *
+ * <p>
+ *     Keyed by the identity of the domain object (rather than its equality, which would be more expensive and is
+ *     not in any case necessary within a single request), and by username in case the current user changes part way
+ *     through the request (eg using the <tt>SudoService</tt>).
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+@RequestScoped
+public class TenancyEvaluationCache {
+
+    private final Map<String, Map<Object, String>> hidesReasonsByUsername = Maps.newHashMap();
+    private final Map<String, Map<Object, String>> disablesReasonsByUsername = Maps.newHashMap();
+
+    /**
+     * The reasons (<tt>null</tt> if visible) for which domain objects have been hidden from the user, keyed by
+     * domain object identity; to be populated by the caller.
+     */
+    @Programmatic
+    public Map<Object, String> hidesReasonsFor(final String username) {
+        return reasonsFor(hidesReasonsByUsername, username);
+    }
+
+    /**
+     * The reasons (<tt>null</tt> if enabled) for which domain objects have been disabled for the user, keyed by
+     * domain object identity; to be populated by the caller.
+     */
+    @Programmatic
+    public Map<Object, String> disablesReasonsFor(final String username) {
+        return reasonsFor(disablesReasonsByUsername, username);
+    }
+
+    private static Map<Object, String> reasonsFor(
+            final Map<String, Map<Object, String>> reasonsByUsername,
+            final String username) {
+        Map<Object, String> reasons = reasonsByUsername.get(username);
+        if(reasons == null) {
+            reasons = new IdentityHashMap<>();
+            reasonsByUsername.put(username, reasons);
+        }
+        return reasons;
+    }
+
+}
@@ -29,8 +29,11 @@
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyEvaluator;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
 import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancy;
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancyCache;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 public class TenantedAuthorizationFacetDefault extends FacetAbstract implements TenantedAuthorizationFacet {
@@ -43,6 +46,8 @@ public static Class<? extends Facet> type() {
     private final ApplicationUserRepository applicationUserRepository;
     private final QueryResultsCache queryResultsCache;
     private final UserService userService;
+    private final ApplicationUserTenancyCache applicationUserTenancyCache;
+    private final TenancyEvaluationCache tenancyEvaluationCache;
 
     public TenantedAuthorizationFacetDefault(
             final List<ApplicationTenancyEvaluator> evaluators,
@@ -50,11 +55,48 @@ public TenantedAuthorizationFacetDefault(
             final QueryResultsCache queryResultsCache,
             final UserService userService,
             final FacetHolder holder) {
+        this(evaluators, applicationUserRepository, queryResultsCache, userService, null, holder);
+    }
+
+    /**
+     * @param applicationUserTenancyCache - if not <tt>null</tt>, then used to obtain the user's tenancy without
+     *                                    querying the user for every request.
+     */
+    public TenantedAuthorizationFacetDefault(
+            final List<ApplicationTenancyEvaluator> evaluators,
+            final ApplicationUserRepository applicationUserRepository,
+            final QueryResultsCache queryResultsCache,
+            final UserService userService,
+            final ApplicationUserTenancyCache applicationUserTenancyCache,
+            final FacetHolder holder) {
+        this(evaluators, applicationUserRepository, queryResultsCache, userService, applicationUserTenancyCache, null, holder);
+    }
+
+    /**
+     * @param applicationUserTenancyCache - if not <tt>null</tt>, then used to obtain the user's tenancy without
+     *                                    querying the user for every request.
+     * @param tenancyEvaluationCache - if not <tt>null</tt>, then used to evaluate each domain object only once per
+     *                               request (rather than once per member).
+     */
+    public TenantedAuthorizationFacetDefault(
+            final List<ApplicationTenancyEvaluator> evaluators,
+            final ApplicationUserRepository applicationUserRepository,
+            final QueryResultsCache queryResultsCache,
+            final UserService userService,
+            final ApplicationUserTenancyCache applicationUserTenancyCache,
+            final TenancyEvaluationCache tenancyEvaluationCache,
+            final FacetHolder holder) {
         super(type(), holder, Derivation.NOT_DERIVED);
         this.evaluators = evaluators;
         this.applicationUserRepository = applicationUserRepository;
         this.queryResultsCache = queryResultsCache;
         this.userService = userService;
+        this.applicationUserTenancyCache = applicationUserTenancyCache;
+        this.tenancyEvaluationCache = tenancyEvaluationCache;
+    }
+
+    List<ApplicationTenancyEvaluator> getEvaluators() {
+        return evaluators;
     }
 
     @Override
@@ -67,14 +109,28 @@ public String hides(final VisibilityContext<? extends VisibilityEvent> ic) {
         final Object domainObject = ic.getTarget().getObject();
         final String userName = userService.getUser().getName();
 
-        final ApplicationUser applicationUser = findApplicationUser(userName);
-        if (applicationUser == null) {
+        final Map<Object, String> hidesReasons =
+                tenancyEvaluationCache != null ? tenancyEvaluationCache.hidesReasonsFor(userName) : null;
+        if (hidesReasons != null && hidesReasons.containsKey(domainObject)) {
+            return hidesReasons.get(domainObject);
+        }
+        final String reason = hides(domainObject, userName);
+        if (hidesReasons != null) {
+            hidesReasons.put(domainObject, reason);
+        }
+        return reason;
+    }
+
+    private String hides(final Object domainObject, final String userName) {
+
+        final ApplicationUserTenancy userTenancy = findApplicationUserTenancy(userName);
+        if (userTenancy == null) {
             // not expected, but best to be safe...
             return "Could not locate application user for " + userName;
         }
 
         for (ApplicationTenancyEvaluator evaluator : evaluators) {
-            final String reason = evaluator.hides(domainObject, applicationUser);
+            final String reason = hides(evaluator, domainObject, userTenancy);
             if(reason != null) {
                 return reason;
             }
@@ -82,6 +138,23 @@ public String hides(final VisibilityContext<? extends VisibilityEvent> ic) {
         return null;
     }
 
+    private String hides(
+            final ApplicationTenancyEvaluator evaluator,
+            final Object domainObject,
+            final ApplicationUserTenancy userTenancy) {
+        if (evaluator instanceof ApplicationTenancyEvaluatorUsingPaths) {
+            final ApplicationTenancyEvaluatorUsingPaths evaluatorUsingPaths = (ApplicationTenancyEvaluatorUsingPaths) evaluator;
+            if (evaluatorUsingPaths.handlesUserTenancy()) {
+                return evaluatorUsingPaths.hides(domainObject, userTenancy);
+            }
+        }
+        final ApplicationUser applicationUser = findApplicationUser(userTenancy.getUsername());
+        if (applicationUser == null) {
+            return "Could not locate application user for " + userTenancy.getUsername();
+        }
+        return evaluator.hides(domainObject, applicationUser);
+    }
+
 
     @Override
     public String disables(final UsabilityContext<? extends UsabilityEvent> ic) {
@@ -92,14 +165,28 @@ public String disables(final UsabilityContext<? extends UsabilityEvent> ic) {
         final Object domainObject = ic.getTarget().getObject();
         final String userName = userService.getUser().getName();
 
-        final ApplicationUser applicationUser = findApplicationUser(userName);
-        if (applicationUser == null) {
+        final Map<Object, String> disablesReasons =
+                tenancyEvaluationCache != null ? tenancyEvaluationCache.disablesReasonsFor(userName) : null;
+        if (disablesReasons != null && disablesReasons.containsKey(domainObject)) {
+            return disablesReasons.get(domainObject);
+        }
+        final String reason = disables(domainObject, userName);
+        if (disablesReasons != null) {
+            disablesReasons.put(domainObject, reason);
+        }
+        return reason;
+    }
+
+    private String disables(final Object domainObject, final String userName) {
+
+        final ApplicationUserTenancy userTenancy = findApplicationUserTenancy(userName);
+        if (userTenancy == null) {
             // not expected, but best to be safe...
             return "Could not locate application user for " + userName;
         }
 
         for (ApplicationTenancyEvaluator evaluator : evaluators) {
-            final String reason = evaluator.disables(domainObject, applicationUser);
+            final String reason = disables(evaluator, domainObject, userTenancy);
             if(reason != null) {
                 return reason;
             }
@@ -107,6 +194,34 @@ public String disables(final UsabilityContext<? extends UsabilityEvent> ic) {
         return null;
     }
 
+    private String disables(
+            final ApplicationTenancyEvaluator evaluator,
+            final Object domainObject,
+            final ApplicationUserTenancy userTenancy) {
+        if (evaluator instanceof ApplicationTenancyEvaluatorUsingPaths) {
+            final ApplicationTenancyEvaluatorUsingPaths evaluatorUsingPaths = (ApplicationTenancyEvaluatorUsingPaths) evaluator;
+            if (evaluatorUsingPaths.handlesUserTenancy()) {
+                return evaluatorUsingPaths.disables(domainObject, userTenancy);
+            }
+        }
+        final ApplicationUser applicationUser = findApplicationUser(userTenancy.getUsername());
+        if (applicationUser == null) {
+            return "Could not locate application user for " + userTenancy.getUsername();
+        }
+        return evaluator.disables(domainObject, applicationUser);
+    }
+
+    /**
+     * The {@link ApplicationUserTenancy tenancy} of the user, from the {@link ApplicationUserTenancyCache} if
+     * available (so shared across requests), else per {@link #findApplicationUser(String)}.
+     */
+    protected ApplicationUserTenancy findApplicationUserTenancy(final String userName) {
+        if (applicationUserTenancyCache != null) {
+            return applicationUserTenancyCache.tenancyFor(userName);
+        }
+        return ApplicationUserTenancy.of(findApplicationUser(userName));
+    }
+
 
     /**
      * Per {@link #findApplicationUserNoCache(String)}, cached for the request using the {@link QueryResultsCache}.
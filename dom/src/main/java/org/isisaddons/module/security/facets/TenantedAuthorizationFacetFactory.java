@@ -18,11 +18,13 @@
 package org.isisaddons.module.security.facets;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.apache.isis.applib.services.queryresultscache.QueryResultsCache;
 import org.apache.isis.applib.services.user.UserService;
@@ -37,11 +39,39 @@
 import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyPathEvaluator;
 import org.isisaddons.module.security.dom.tenancy.HasAtPath;
 import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancyCache;
 
+/**
+ * Installs a {@link TenantedAuthorizationFacetDefault} on every class (and on each of its members and parameters)
+ * that is handled by at least one {@link ApplicationTenancyEvaluator}.
+ *
+ * <p>
+ *     The evaluators (and the services that the facets delegate to) are resolved only once, and the evaluators are
+ *     filtered only once per class; each facet (one per holder) then shares these, rather than resolving and
+ *     filtering them again for every member of every tenanted entity.
+ * </p>
+ */
 public class TenantedAuthorizationFacetFactory extends FacetFactoryAbstract implements ServicesInjectorAware {
 
     private ServicesInjector servicesInjector;
 
+    /**
+     * Resolved {@link #evaluators() lazily}, once the {@link ServicesInjector} is available.
+     */
+    private List<ApplicationTenancyEvaluator> evaluators;
+
+    /**
+     * Resolved {@link #services() lazily}, along with the evaluators.
+     */
+    private Services services;
+
+    /**
+     * The evaluators that handle each class, shared by the facets of the class and of all of its members and
+     * parameters; empty if the class is not handled by any evaluator.
+     */
+    private final ConcurrentMap<Class<?>, List<ApplicationTenancyEvaluator>> evaluatorsByClass =
+            Maps.newConcurrentMap();
+
 
     public TenantedAuthorizationFacetFactory() {
         super(FeatureType.EVERYTHING);
@@ -52,25 +82,56 @@ public void process(final ProcessClassContext processClassContext) {
         final Class<?> cls = processClassContext.getCls();
 
         FacetHolder facetHolder = processClassContext.getFacetHolder();
-        FacetUtil.addFacet(createFacet(cls, facetHolder));
+        addFacet(cls, facetHolder);
     }
 
     @Override
     public void process(final ProcessMethodContext processMethodContext) {
         final Class<?> cls = processMethodContext.getCls();
         FacetHolder facetHolder = processMethodContext.getFacetHolder();
-        FacetUtil.addFacet(createFacet(cls, facetHolder));
+        addFacet(cls, facetHolder);
     }
 
     @Override
     public void processParams(final ProcessParameterContext processParameterContext) {
         final Class<?> cls = processParameterContext.getCls();
         FacetHolder facetHolder = processParameterContext.getFacetHolder();
-        FacetUtil.addFacet(createFacet(cls, facetHolder));
+        addFacet(cls, facetHolder);
     }
 
-    private TenantedAuthorizationFacetDefault createFacet(
-            final Class<?> cls, final FacetHolder holder) {
+    void addFacet(final Class<?> cls, final FacetHolder holder) {
+        final List<ApplicationTenancyEvaluator> evaluatorsForCls = evaluatorsFor(cls);
+        if(evaluatorsForCls.isEmpty()) {
+            return;
+        }
+        FacetUtil.addFacet(createFacet(evaluatorsForCls, holder));
+    }
+
+    private List<ApplicationTenancyEvaluator> evaluatorsFor(final Class<?> cls) {
+        final List<ApplicationTenancyEvaluator> evaluatorsForCls = evaluatorsByClass.get(cls);
+        if(evaluatorsForCls != null) {
+            return evaluatorsForCls;
+        }
+        final List<ApplicationTenancyEvaluator> newEvaluatorsForCls =
+                FluentIterable.from(evaluators()).filter(new Predicate<ApplicationTenancyEvaluator>() {
+            @Override
+            public boolean apply(ApplicationTenancyEvaluator applicationTenancyEvaluator) {
+                return applicationTenancyEvaluator.handles(cls);
+            }
+        }).toList();
+        final List<ApplicationTenancyEvaluator> existingEvaluatorsForCls =
+                evaluatorsByClass.putIfAbsent(cls, newEvaluatorsForCls);
+        return existingEvaluatorsForCls != null ? existingEvaluatorsForCls : newEvaluatorsForCls;
+    }
+
+    private synchronized List<ApplicationTenancyEvaluator> evaluators() {
+        if(evaluators == null) {
+            evaluators = ImmutableList.copyOf(lookupEvaluators());
+        }
+        return evaluators;
+    }
+
+    List<ApplicationTenancyEvaluator> lookupEvaluators() {
 
         List<ApplicationTenancyEvaluator> evaluators = servicesInjector.lookupServices(ApplicationTenancyEvaluator.class);
         if(isNullOrEmpty(evaluators)) {
@@ -92,25 +153,55 @@ private TenantedAuthorizationFacetDefault createFacet(
                 evaluators.add(evaluator);
             }
         }
+        return evaluators;
+    }
 
-        final ImmutableList<ApplicationTenancyEvaluator> evaluatorsForCls =
-                FluentIterable.from(evaluators).filter(new Predicate<ApplicationTenancyEvaluator>() {
-            @Override
-            public boolean apply(ApplicationTenancyEvaluator applicationTenancyEvaluator) {
-                return applicationTenancyEvaluator.handles(cls);
-            }
-        }).toList();
+    private TenantedAuthorizationFacetDefault createFacet(
+            final List<ApplicationTenancyEvaluator> evaluatorsForCls, final FacetHolder holder) {
+        final Services services = services();
+        return new TenantedAuthorizationFacetDefault(
+                evaluatorsForCls, services.applicationUserRepository, services.queryResultsCache, services.userService,
+                services.applicationUserTenancyCache, services.tenancyEvaluationCache, holder);
+    }
 
-        if(evaluatorsForCls.isEmpty()) {
-            return null;
+    /**
+     * The services to which every facet delegates.
+     */
+    private static class Services {
+        private final ApplicationUserRepository applicationUserRepository;
+        private final QueryResultsCache queryResultsCache;
+        private final UserService userService;
+        private final ApplicationUserTenancyCache applicationUserTenancyCache;
+        private final TenancyEvaluationCache tenancyEvaluationCache;
+
+        private Services(
+                final ApplicationUserRepository applicationUserRepository,
+                final QueryResultsCache queryResultsCache,
+                final UserService userService,
+                final ApplicationUserTenancyCache applicationUserTenancyCache,
+                final TenancyEvaluationCache tenancyEvaluationCache) {
+            this.applicationUserRepository = applicationUserRepository;
+            this.queryResultsCache = queryResultsCache;
+            this.userService = userService;
+            this.applicationUserTenancyCache = applicationUserTenancyCache;
+            this.tenancyEvaluationCache = tenancyEvaluationCache;
         }
+    }
 
-        final ApplicationUserRepository applicationUserRepository =
-                servicesInjector.lookupService(ApplicationUserRepository.class);
-        final QueryResultsCache queryResultsCache = servicesInjector.lookupService(QueryResultsCache.class);
-        final UserService userService = servicesInjector.lookupService(UserService.class);
+    private synchronized Services services() {
+        if(services == null) {
+            services = new Services(
+                    lookupService(ApplicationUserRepository.class),
+                    lookupService(QueryResultsCache.class),
+                    lookupService(UserService.class),
+                    lookupService(ApplicationUserTenancyCache.class),
+                    lookupService(TenancyEvaluationCache.class));
+        }
+        return services;
+    }
 
-        return new TenantedAuthorizationFacetDefault(evaluatorsForCls, applicationUserRepository, queryResultsCache, userService, holder);
+    <T> T lookupService(final Class<T> serviceClass) {
+        return servicesInjector.lookupService(serviceClass);
     }
 
     private static boolean isNullOrEmpty(final List<?> list) {
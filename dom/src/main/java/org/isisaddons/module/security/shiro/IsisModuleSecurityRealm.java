@@ -22,20 +22,39 @@
 import org.apache.isis.core.runtime.system.transaction.IsisTransactionManager;
 import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturn;
 import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturnAbstract;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.cache.Cache;
 import org.apache.shiro.realm.AuthenticatingRealm;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.util.Destroyable;
 import org.isisaddons.module.security.dom.password.PasswordEncryptionService;
+import org.isisaddons.module.security.dom.password.PasswordHashingRejectedException;
 import org.isisaddons.module.security.dom.user.AccountType;
 import org.isisaddons.module.security.dom.user.ApplicationUser;
 import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
 
 import javax.inject.Inject;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
-public class IsisModuleSecurityRealm extends AuthorizingRealm {
+public class IsisModuleSecurityRealm extends AuthorizingRealm implements Destroyable {
 
 
     //region > constructor
@@ -50,6 +69,27 @@ public IsisModuleSecurityRealm() {
     }
     //endregion
 
+    //region > destroy (Shiro API)
+
+    /**
+     * Called by Shiro when the security manager is destroyed (eg when the application is undeployed); shuts down the
+     * {@link #getDelegateAuthenticationThreads() delegate authentication threads}, if any, and the threads used to
+     * {@link #executeInOwnTransaction(TransactionalClosureWithReturn) execute in a transaction of their own}, and
+     * unregisters the
+     * {@link #getMetricsObjectName() metrics MBean}, if any (so that the MBean server does not retain this realm,
+     * and with it the application's classloader).
+     */
+    @Override
+    public void destroy() {
+        final ThreadPoolExecutor executor = this.delegateAuthenticationExecutor;
+        this.delegateAuthenticationExecutor = null;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        ownTransactionExecutor.shutdownNow();
+        unregisterMetrics();
+    }
+    //endregion
 
     //region > doGetAuthenticationInfo, doGetAuthorizationInfo (Shiro API)
 
@@ -62,6 +102,15 @@ public IsisModuleSecurityRealm() {
      */
     @Override
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+        final long startNanos = System.nanoTime();
+        try {
+            return doAuthenticate(token);
+        } finally {
+            metrics.recordLatency(IsisModuleSecurityRealmMetrics.Phase.LOGIN, startNanos);
+        }
+    }
+
+    private AuthenticationInfo doAuthenticate(final AuthenticationToken token) {
 
         if (!(token instanceof UsernamePasswordToken)) {
             throw new AuthenticationException();
@@ -71,63 +120,247 @@ protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token)
         String username = usernamePasswordToken.getUsername();
         char[] password = usernamePasswordToken.getPassword();
 
-        // lookup from database, for roles/perms, but also
-        // determine how to authenticate (delegate or local), whether disabled
-        final PrincipalForApplicationUser principal = lookupPrincipal(username,
-                (hasDelegateAuthenticationRealm() && getAutoCreateUser()));
-        if (principal == null) {
-            // if no delegate authentication
-            throw new CredentialsException("Unknown user/password combination");
+        final VerifiedCredentialsCache verifiedCredentialsCache = this.verifiedCredentialsCache;
+        if (verifiedCredentialsCache != null) {
+            final PrincipalForApplicationUser verifiedPrincipal = verifiedCredentialsCache.lookup(username, password);
+            if (verifiedPrincipal != null) {
+                metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.OK);
+                return new AuthInfoForApplicationUser(verifiedPrincipal, getName(), token.getCredentials());
+            }
+        }
+
+        // refuse without any further work if there have been too many recent failures, for this user or from this address
+        final String remoteAddress = usernamePasswordToken.getHost();
+        if (isLoginThrottled(username, remoteAddress)) {
+            metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.THROTTLED);
+            throw new ExcessiveAttemptsException();
+        }
+
+        final PrincipalForApplicationUser principal;
+        try {
+            principal = authenticate(token, username, password);
+        } catch (CredentialsException ex) {
+            recordFailedLogin(username, remoteAddress);
+            throw ex;
         }
+        recordSuccessfulLogin(username);
+        metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.OK);
+
+        if (verifiedCredentialsCache != null) {
+            verifiedCredentialsCache.put(username, password, principal);
+        }
+
+        final Object credentials = token.getCredentials();
+        final String realmName = getName();
+        return new AuthInfoForApplicationUser(principal, realmName, credentials);
+    }
+
+    /**
+     * Authenticates the token, returning the principal; throws a {@link CredentialsException} if the user is unknown
+     * or the credentials are invalid.
+     */
+    private PrincipalForApplicationUser authenticate(
+            final AuthenticationToken token,
+            final String username,
+            final char[] password) {
 
-        if (principal.isDisabled()) {
-            // this is the default if delegated account and automatically created
-            throw new DisabledAccountException();
+        if (isKnownToBeUnknownUsername(username)) {
+            metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.UNKNOWN_USER);
+            throw new CredentialsException("Unknown user/password combination");
         }
 
-        if(principal.getAccountType() == AccountType.DELEGATED) {
-            AuthenticationInfo delegateAccount = null;
-            if (hasDelegateAuthenticationRealm()) {
-                try {
-                    delegateAccount = delegateAuthenticationRealm.getAuthenticationInfo(token);
-                } catch (AuthenticationException ex) {
-                    // fall through
+        // if configured, speculatively check the credentials with the delegate realm concurrently with the lookup,
+        // but only if this is already known to be a delegated account
+        final Future<AuthenticationInfo> delegateAuthentication =
+                isKnownToBeDelegatedUsername(username) ? startDelegateAuthentication(token) : null;
+        try {
+            // lookup from database, for roles/perms, but also
+            // determine how to authenticate (delegate or local), whether disabled;
+            // local accounts also have their password checked (once the lookup's transaction has completed)
+            LookupAndCheckPasswordResult lookupResult;
+            try {
+                lookupResult = lookupPrincipalAndCheckPassword(username, password);
+                if (lookupResult.principal == null && hasDelegateAuthenticationRealm() && getAutoCreateUser()) {
+                    createDelegateUserIfAbsent(username);
+                    lookupResult = lookupPrincipalAndCheckPassword(username, password);
                 }
+            } catch (PasswordHashingRejectedException ex) {
+                metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.REJECTED);
+                throw ex;
+            } catch (RuntimeException ex) {
+                metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.ERROR);
+                throw ex;
             }
-            if(delegateAccount == null) {
+            final PrincipalForApplicationUser principal = lookupResult.principal;
+            if (principal == null) {
+                // if no delegate authentication
+                rememberUnknownUsername(username);
+                metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.UNKNOWN_USER);
                 throw new CredentialsException("Unknown user/password combination");
             }
-        } else {
-            final CheckPasswordResult result = checkPassword(password, principal.getEncryptedPassword());
-            switch (result) {
-                case OK:
-                    break;
-                case BAD_PASSWORD:
+
+            if (principal.isDisabled()) {
+                // this is the default if delegated account and automatically created
+                metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.DISABLED);
+                throw new DisabledAccountException();
+            }
+
+            rememberAccountType(username, principal.getAccountType());
+            if(principal.getAccountType() == AccountType.DELEGATED) {
+                final AuthenticationInfo delegateAccount = delegateAuthentication != null
+                        ? awaitDelegateAuthentication(delegateAuthentication)
+                        : authenticateWithDelegate(token);
+                if(delegateAccount == null) {
+                    metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.BAD_PASSWORD);
                     throw new CredentialsException("Unknown user/password combination");
-                case NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED:
-                    throw new AuthenticationException("No password encryption service is installed");
-                default:
+                }
+            } else {
+                final CheckPasswordResult result = lookupResult.checkPasswordResult;
+                if (result == null) {
+                    metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.ERROR);
                     throw new AuthenticationException();
+                }
+                switch (result) {
+                    case OK:
+                        break;
+                    case BAD_PASSWORD:
+                        metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.BAD_PASSWORD);
+                        throw new CredentialsException("Unknown user/password combination");
+                    case NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED:
+                        metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.ERROR);
+                        throw new AuthenticationException("No password encryption service is installed");
+                    default:
+                        metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.ERROR);
+                        throw new AuthenticationException();
+                }
             }
-        }
+            return principal;
 
-        final Object credentials = token.getCredentials();
-        final String realmName = getName();
-        return new AuthInfoForApplicationUser(principal, realmName, credentials);
+        } finally {
+            if (delegateAuthentication != null) {
+                // no-op if already complete; otherwise no longer required (local account, or failed before)
+                delegateAuthentication.cancel(true);
+            }
+        }
     }
 
+    /**
+     * If an authorization cache is {@link #getAuthorizationCache() available} (that is, if a Shiro
+     * {@link org.apache.shiro.cache.CacheManager} has been configured), then looks up the user afresh, so that any
+     * changes to its roles or permissions since login are honoured.  The result is cached (keyed by
+     * {@link #getAuthorizationCacheKey(PrincipalCollection) username}) until
+     * {@link #invalidateAuthorizationInfo(String) invalidated}.
+     *
+     * <p>
+     *     Otherwise, simply returns the principal captured at login.
+     * </p>
+     */
     @Override
     protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
         final PrincipalForApplicationUser urp = principals.oneByType(PrincipalForApplicationUser.class);
         if (urp == null) {
             return null;
         }
-        return urp;
+        if (getAuthorizationCache() == null) {
+            return urp;
+        }
+        return lookupPrincipal(urp.getUsername(), false);
+    }
+
+    /**
+     * Cache authorization info by username (rather than by the principals themselves), so that it can be shared
+     * across sessions and {@link #invalidateAuthorizationInfo(String) invalidated} by user.
+     */
+    @Override
+    protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+        final PrincipalForApplicationUser urp = principals.oneByType(PrincipalForApplicationUser.class);
+        return urp != null ? urp.getUsername() : super.getAuthorizationCacheKey(principals);
+    }
+
+    //endregion
+
+    //region > invalidateAuthorizationInfo
+
+    /**
+     * Discards the cached authorization info (if any) of the specified user.
+     */
+    public void invalidateAuthorizationInfo(final String username) {
+        final Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+        if(cache == null) {
+            return;
+        }
+        cache.remove(username);
+    }
+
+    /**
+     * Discards the cached authorization info of every user holding the specified role.
+     */
+    public void invalidateAuthorizationInfoForRole(final String roleName) {
+        final Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+        if(cache == null) {
+            return;
+        }
+        for (final Object key : cache.keys()) {
+            final AuthorizationInfo authorizationInfo = cache.get(key);
+            if(authorizationInfo == null || authorizationInfo.getRoles() == null || authorizationInfo.getRoles().contains(roleName)) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Discards all cached authorization info.
+     */
+    public void invalidateAllAuthorizationInfo() {
+        final Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+        if(cache == null) {
+            return;
+        }
+        cache.clear();
+    }
+
+    //region > isPermitted (Shiro API)
+
+    /**
+     * If {@link #isDirectPermissionEvaluation() direct permission evaluation} is enabled, then evaluates the
+     * permission string (as formatted by Isis' <code>ShiroAuthorizor</code>) directly against the principal's
+     * permission set.
+     *
+     * <p>
+     *     This avoids Shiro resolving the string to a new {@link PermissionForMember} and then iterating over the
+     *     {@link AuthorizationInfo#getObjectPermissions() object permissions} of the principal on every call; instead
+     *     the parsed feature is looked up from a cache keyed by the permission string.
+     * </p>
+     */
+    @Override
+    public boolean isPermitted(final PrincipalCollection principals, final String permission) {
+        if(!isDirectPermissionEvaluation()) {
+            return super.isPermitted(principals, permission);
+        }
+        final AuthorizationInfo authorizationInfo = getAuthorizationInfo(principals);
+        if(!(authorizationInfo instanceof PrincipalForApplicationUser)) {
+            return super.isPermitted(principals, permission);
+        }
+        final PrincipalForApplicationUser principal = (PrincipalForApplicationUser) authorizationInfo;
+        final PermissionForMember permissionForMember = permissionForMember(permission);
+        return principal.grants(permissionForMember.getFeatureId(), permissionForMember.getMode());
+    }
+
+    private final com.google.common.cache.Cache<String, PermissionForMember> permissionForMemberByString =
+            CacheBuilder.newBuilder().maximumSize(10000).build();
+
+    private PermissionForMember permissionForMember(final String permission) {
+        PermissionForMember permissionForMember = permissionForMemberByString.getIfPresent(permission);
+        if(permissionForMember == null) {
+            permissionForMember = new PermissionForMember(permission);
+            permissionForMemberByString.put(permission, permissionForMember);
+        }
+        return permissionForMember;
     }
 
     //endregion
 
-    //region > lookupPrincipal
+    //region > lookupPrincipal, lookupPrincipalAndCheckPassword
 
 
     /**
@@ -138,16 +371,122 @@ private PrincipalForApplicationUser lookupPrincipal(final String username, final
         return execute(new TransactionalClosureWithReturnAbstract<PrincipalForApplicationUser>() {
             @Override
             public PrincipalForApplicationUser execute() {
-                final ApplicationUser applicationUser = lookupUser();
-                return PrincipalForApplicationUser.from(applicationUser);
+                final long startNanos = System.nanoTime();
+                final ApplicationUser applicationUser = lookupUser(applicationUserRepository, username, autoCreateUser);
+                final PrincipalForApplicationUser principal =
+                        PrincipalForApplicationUser.from(applicationUser, getPermissionCacheSize(), metrics);
+                metrics.recordLatency(IsisModuleSecurityRealmMetrics.Phase.LOOKUP_PRINCIPAL, startNanos);
+                return principal;
             }
 
-            private ApplicationUser lookupUser() {
-                if (autoCreateUser) {
-                    return applicationUserRepository.findOrCreateUserByUsername(username);
-                } else {
-                    return applicationUserRepository.findByUsername(username);
+            @Inject
+            private ApplicationUserRepository applicationUserRepository;
+        });
+    }
+
+    private static class LookupAndCheckPasswordResult {
+        private final PrincipalForApplicationUser principal;
+        /**
+         * <tt>null</tt> if the password was not checked (unknown user, disabled or delegated account).
+         */
+        private final CheckPasswordResult checkPasswordResult;
+
+        private LookupAndCheckPasswordResult(
+                final PrincipalForApplicationUser principal,
+                final CheckPasswordResult checkPasswordResult) {
+            this.principal = principal;
+            this.checkPasswordResult = checkPasswordResult;
+        }
+    }
+
+    /**
+     * As {@link #lookupPrincipal(String, boolean)} (without auto-creating the user), but additionally (for an enabled
+     * local account) checks the password.
+     *
+     * <p>
+     *     Only the lookup is performed within a transaction.  Checking the password is deliberately slow (and may
+     *     also wait for a {@link org.isisaddons.module.security.dom.password.PasswordHashingExecutor hashing thread}),
+     *     so is performed afterwards, without holding on to a database connection.
+     * </p>
+     */
+    private LookupAndCheckPasswordResult lookupPrincipalAndCheckPassword(
+            final String username,
+            final char[] password) {
+        final LookupResult lookupResult = execute(new TransactionalClosureWithReturnAbstract<LookupResult>() {
+            @Override
+            public LookupResult execute() {
+                final long startNanos = System.nanoTime();
+                final ApplicationUser applicationUser = lookupUser(applicationUserRepository, username, false);
+                final PrincipalForApplicationUser principal =
+                        PrincipalForApplicationUser.from(applicationUser, getPermissionCacheSize(), metrics);
+                metrics.recordLatency(IsisModuleSecurityRealmMetrics.Phase.LOOKUP_PRINCIPAL, startNanos);
+                return new LookupResult(principal, passwordEncryptionService);
+            }
+
+            @Inject
+            private ApplicationUserRepository applicationUserRepository;
+
+            @Inject
+            private PasswordEncryptionService passwordEncryptionService;
+        });
+
+        final PrincipalForApplicationUser principal = lookupResult.principal;
+        if (principal == null || principal.isDisabled() || principal.getAccountType() == AccountType.DELEGATED) {
+            return new LookupAndCheckPasswordResult(principal, null);
+        }
+        final PasswordEncryptionService passwordEncryptionService = lookupResult.passwordEncryptionService;
+        final long startNanos = System.nanoTime();
+        final CheckPasswordResult checkPasswordResult =
+                checkPassword(passwordEncryptionService, password, principal.getEncryptedPassword());
+        metrics.recordLatency(IsisModuleSecurityRealmMetrics.Phase.CHECK_PASSWORD, startNanos);
+        if (checkPasswordResult == CheckPasswordResult.OK) {
+            rehashIfRequired(passwordEncryptionService, username, password, principal.getEncryptedPassword());
+        }
+        return new LookupAndCheckPasswordResult(principal, checkPasswordResult);
+    }
+
+    private static class LookupResult {
+        private final PrincipalForApplicationUser principal;
+        private final PasswordEncryptionService passwordEncryptionService;
+
+        private LookupResult(
+                final PrincipalForApplicationUser principal,
+                final PasswordEncryptionService passwordEncryptionService) {
+            this.principal = principal;
+            this.passwordEncryptionService = passwordEncryptionService;
+        }
+    }
+
+    /**
+     * Transparently re-encrypts the (now known to be correct) password if it was encrypted using outdated settings
+     * (eg a lower bcrypt cost).
+     *
+     * <p>
+     *     The new hash is computed outside of any transaction; it is then stored in a transaction of its own, but only
+     *     if the user's password has not been changed in the meantime.
+     * </p>
+     */
+    private void rehashIfRequired(
+            final PasswordEncryptionService passwordEncryptionService,
+            final String username,
+            final char[] password,
+            final String encryptedPassword) {
+        if (!(passwordEncryptionService instanceof PasswordEncryptionService.Rehashing)) {
+            return;
+        }
+        final PasswordEncryptionService.Rehashing rehashing = (PasswordEncryptionService.Rehashing) passwordEncryptionService;
+        if (!rehashing.needsRehash(encryptedPassword)) {
+            return;
+        }
+        final String rehashedPassword = passwordEncryptionService.encrypt(new String(password));
+        execute(new TransactionalClosureWithReturnAbstract<Void>() {
+            @Override
+            public Void execute() {
+                final ApplicationUser applicationUser = lookupUser(applicationUserRepository, username, false);
+                if (applicationUser != null && encryptedPassword.equals(applicationUser.getEncryptedPassword())) {
+                    applicationUser.setEncryptedPassword(rehashedPassword);
                 }
+                return null;
             }
 
             @Inject
@@ -155,6 +494,62 @@ private ApplicationUser lookupUser() {
         });
     }
 
+    /**
+     * Guards the auto-creation of delegated users, so that concurrent first logins of the same user (within this JVM)
+     * do not race to create it; striped so that logins of different users do not (in general) contend.
+     */
+    private final Striped<Lock> createDelegateUserLocks = Striped.lock(64);
+
+    /**
+     * Creates the (delegated) user, in its own transaction, unless it already exists.
+     *
+     * <p>
+     *     Idempotent: within this JVM, creation of any given user is serialized; and should the user nevertheless be
+     *     created concurrently elsewhere (eg by another node of a cluster, so that the insert fails on the unique
+     *     username constraint) then the failure is ignored provided that the user can now be found.
+     * </p>
+     *
+     * <p>
+     *     The transaction is always a {@link #executeInOwnTransaction(TransactionalClosureWithReturn) new one}, even if
+     *     logging in within an existing session, so that a failed insert does not leave that session's transaction
+     *     marked for rollback.
+     * </p>
+     */
+    private void createDelegateUserIfAbsent(final String username) {
+        final Lock lock = createDelegateUserLocks.get(username);
+        lock.lock();
+        try {
+            try {
+                executeInOwnTransaction(new TransactionalClosureWithReturnAbstract<ApplicationUser>() {
+                    @Override
+                    public ApplicationUser execute() {
+                        return lookupUser(applicationUserRepository, username, true);
+                    }
+
+                    @Inject
+                    private ApplicationUserRepository applicationUserRepository;
+                });
+            } catch (RuntimeException ex) {
+                if (lookupPrincipal(username, false) == null) {
+                    throw ex;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ApplicationUser lookupUser(
+            final ApplicationUserRepository applicationUserRepository,
+            final String username,
+            final boolean autoCreateUser) {
+        if (autoCreateUser) {
+            return applicationUserRepository.findOrCreateUserByUsername(username);
+        } else {
+            return applicationUserRepository.findByUsername(username);
+        }
+    }
+
     //endregion
 
     //region > checkPassword
@@ -165,21 +560,19 @@ private static enum CheckPasswordResult {
         NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED
     }
 
-    private CheckPasswordResult checkPassword(final char[] candidate, final String actualEncryptedPassword) {
-        return execute(new TransactionalClosureWithReturnAbstract<CheckPasswordResult>() {
-            @Override
-            public CheckPasswordResult execute() {
-                if (passwordEncryptionService == null) {
-                    return CheckPasswordResult.NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED;
-                }
-                return passwordEncryptionService.matches(new String(candidate), actualEncryptedPassword)
-                        ? CheckPasswordResult.OK
-                        : CheckPasswordResult.BAD_PASSWORD;
-            }
-
-            @Inject
-            private PasswordEncryptionService passwordEncryptionService;
-        });
+    private static CheckPasswordResult checkPassword(
+            final PasswordEncryptionService passwordEncryptionService,
+            final char[] candidate,
+            final String actualEncryptedPassword) {
+        if (passwordEncryptionService == null) {
+            return CheckPasswordResult.NO_PASSWORD_ENCRYPTION_SERVICE_CONFIGURED;
+        }
+        if (candidate == null) {
+            return CheckPasswordResult.BAD_PASSWORD;
+        }
+        return passwordEncryptionService.matches(new String(candidate), actualEncryptedPassword)
+                ? CheckPasswordResult.OK
+                : CheckPasswordResult.BAD_PASSWORD;
     }
 
     //endregion
@@ -201,6 +594,135 @@ public boolean hasDelegateAuthenticationRealm() {
 
     //endregion
 
+    //region > delegateAuthenticationThreads
+
+    private int delegateAuthenticationThreads = 0;
+    private volatile ThreadPoolExecutor delegateAuthenticationExecutor;
+
+    /**
+     * If non-zero, then the credentials are checked against the {@link #getDelegateAuthenticationRealm() delegate realm}
+     * on a pool of this many threads, concurrently with the database lookup of the user (rather than afterwards), so
+     * that the login latency of a delegated account is the greater of the two rather than their sum; zero (the
+     * default) to disable.
+     *
+     * <p>
+     *     This is only done for usernames already known (from a previous login on this node) to be delegated
+     *     accounts; the credentials of local accounts, or of users not yet seen, are never sent to the delegate realm
+     *     before the account type has been looked up.
+     * </p>
+     *
+     * <p>
+     *     The threads are shut down when the realm is {@link #destroy() destroyed}.
+     * </p>
+     */
+    public int getDelegateAuthenticationThreads() {
+        return delegateAuthenticationThreads;
+    }
+
+    public void setDelegateAuthenticationThreads(int delegateAuthenticationThreads) {
+        final ThreadPoolExecutor previousExecutor = this.delegateAuthenticationExecutor;
+        this.delegateAuthenticationThreads = delegateAuthenticationThreads;
+        this.delegateAuthenticationExecutor = delegateAuthenticationThreads > 0
+                ? newDelegateAuthenticationExecutor(delegateAuthenticationThreads)
+                : null;
+        if (previousExecutor != null) {
+            previousExecutor.shutdown();
+        }
+    }
+
+    private static ThreadPoolExecutor newDelegateAuthenticationExecutor(final int threads) {
+        return new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 16),
+                daemonThreadFactory("isis-module-security-delegate-authentication-"));
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String threadNamePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static final int DELEGATED_USERNAMES_MAXIMUM_SIZE = 10000;
+
+    /**
+     * Usernames whose account was last looked up as being {@link AccountType#DELEGATED delegated}.
+     */
+    private final com.google.common.cache.Cache<String, Boolean> delegatedUsernames =
+            CacheBuilder.newBuilder().maximumSize(DELEGATED_USERNAMES_MAXIMUM_SIZE).build();
+
+    private boolean isKnownToBeDelegatedUsername(final String username) {
+        return username != null && delegatedUsernames.getIfPresent(username) != null;
+    }
+
+    private void rememberAccountType(final String username, final AccountType accountType) {
+        if (accountType == AccountType.DELEGATED) {
+            delegatedUsernames.put(username, Boolean.TRUE);
+        } else {
+            delegatedUsernames.invalidate(username);
+        }
+    }
+
+    /**
+     * @return <tt>null</tt> if not configured to authenticate concurrently (or if the pool is saturated), in which
+     * case the delegate realm is instead consulted {@link #authenticateWithDelegate(AuthenticationToken) directly}
+     * if and when required.
+     */
+    private Future<AuthenticationInfo> startDelegateAuthentication(final AuthenticationToken token) {
+        final ThreadPoolExecutor executor = this.delegateAuthenticationExecutor;
+        if (executor == null || !hasDelegateAuthenticationRealm()) {
+            return null;
+        }
+        try {
+            return executor.submit(new Callable<AuthenticationInfo>() {
+                @Override
+                public AuthenticationInfo call() {
+                    return authenticateWithDelegate(token);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            return null;
+        }
+    }
+
+    private AuthenticationInfo awaitDelegateAuthentication(final Future<AuthenticationInfo> delegateAuthentication) {
+        try {
+            return delegateAuthentication.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            metrics.recordLoginOutcome(IsisModuleSecurityRealmMetrics.LoginOutcome.ERROR);
+            throw new AuthenticationException(ex);
+        } catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return <tt>null</tt> if there is no delegate realm, or if it does not authenticate the token.
+     */
+    private AuthenticationInfo authenticateWithDelegate(final AuthenticationToken token) {
+        if (!hasDelegateAuthenticationRealm()) {
+            return null;
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            return delegateAuthenticationRealm.getAuthenticationInfo(token);
+        } catch (AuthenticationException ex) {
+            return null;
+        } finally {
+            metrics.recordLatency(IsisModuleSecurityRealmMetrics.Phase.DELEGATE_AUTHENTICATION, startNanos);
+        }
+    }
+
+    //endregion
+
     //region > autoCreateUser
 
     private boolean autoCreateUser = true;
@@ -215,9 +737,344 @@ public void setAutoCreateUser(boolean autoCreateUser) {
 
     //endregion
 
+    //region > permissionCacheSize
+
+    private int permissionCacheSize = PrincipalForApplicationUser.DEFAULT_PERMISSION_CACHE_SIZE;
+
+    /**
+     * The maximum number of permission verdicts (per mode) memoized by each logged-in user's principal; zero to disable.
+     */
+    public int getPermissionCacheSize() {
+        return permissionCacheSize;
+    }
+
+    public void setPermissionCacheSize(int permissionCacheSize) {
+        this.permissionCacheSize = permissionCacheSize;
+    }
+
+    //endregion
+
+    //region > directPermissionEvaluation
+
+    private boolean directPermissionEvaluation = false;
+
+    /**
+     * Whether {@link #isPermitted(PrincipalCollection, String)} should bypass Shiro's permission resolution and
+     * evaluate the (cached) permission set directly; opt-in.
+     */
+    public boolean isDirectPermissionEvaluation() {
+        return directPermissionEvaluation;
+    }
+
+    public void setDirectPermissionEvaluation(boolean directPermissionEvaluation) {
+        this.directPermissionEvaluation = directPermissionEvaluation;
+    }
+
+    //endregion
+
+    //region > credentialsCacheTimeToLive, invalidateCredentials
+
+    /**
+     * Maximum number of users whose verified credentials are cached.
+     */
+    private static final int CREDENTIALS_CACHE_MAXIMUM_SIZE = 10000;
+
+    private int credentialsCacheTimeToLive = 0;
+    private volatile VerifiedCredentialsCache verifiedCredentialsCache;
+
+    /**
+     * The number of seconds for which a successful authentication is remembered (for the exact same username and
+     * password), during which re-presenting those credentials skips both the database lookup and the password
+     * hashing; zero (the default) to disable.
+     *
+     * <p>
+     *     Intended for stateless clients (eg Restful Objects clients using basic auth) that authenticate on every request.
+     * </p>
+     */
+    public int getCredentialsCacheTimeToLive() {
+        return credentialsCacheTimeToLive;
+    }
+
+    public void setCredentialsCacheTimeToLive(int credentialsCacheTimeToLive) {
+        this.credentialsCacheTimeToLive = credentialsCacheTimeToLive;
+        this.verifiedCredentialsCache =
+                credentialsCacheTimeToLive > 0
+                        ? new VerifiedCredentialsCache(credentialsCacheTimeToLive, CREDENTIALS_CACHE_MAXIMUM_SIZE)
+                        : null;
+    }
+
+    /**
+     * Discards any cached verification of the specified user's credentials (or that the user is
+     * {@link #getUnknownUserCacheTimeToLive() unknown}, or has a delegated account).
+     */
+    public void invalidateCredentials(final String username) {
+        final VerifiedCredentialsCache verifiedCredentialsCache = this.verifiedCredentialsCache;
+        if(verifiedCredentialsCache != null) {
+            verifiedCredentialsCache.invalidate(username);
+        }
+        final com.google.common.cache.Cache<String, Boolean> unknownUsernames = this.unknownUsernames;
+        if(unknownUsernames != null && username != null) {
+            unknownUsernames.invalidate(username);
+        }
+        if(username != null) {
+            delegatedUsernames.invalidate(username);
+        }
+    }
+
+    /**
+     * Discards any cached verification of the credentials of every user holding the specified role, so that the
+     * principal cached along with them (and its roles and permissions) is not reused.
+     */
+    public void invalidateCredentialsForRole(final String roleName) {
+        final VerifiedCredentialsCache verifiedCredentialsCache = this.verifiedCredentialsCache;
+        if(verifiedCredentialsCache != null) {
+            verifiedCredentialsCache.invalidateForRole(roleName);
+        }
+    }
+
+    /**
+     * Discards all cached verifications of credentials (and of {@link #getUnknownUserCacheTimeToLive() unknown} users).
+     */
+    public void invalidateAllCredentials() {
+        final VerifiedCredentialsCache verifiedCredentialsCache = this.verifiedCredentialsCache;
+        if(verifiedCredentialsCache != null) {
+            verifiedCredentialsCache.invalidateAll();
+        }
+        final com.google.common.cache.Cache<String, Boolean> unknownUsernames = this.unknownUsernames;
+        if(unknownUsernames != null) {
+            unknownUsernames.invalidateAll();
+        }
+        delegatedUsernames.invalidateAll();
+    }
+
+    //endregion
+
+    //region > unknownUserCacheTimeToLive
+
+    /**
+     * Maximum number of unknown usernames remembered.
+     */
+    private static final int UNKNOWN_USER_CACHE_MAXIMUM_SIZE = 10000;
+
+    private int unknownUserCacheTimeToLive = 0;
+    private volatile com.google.common.cache.Cache<String, Boolean> unknownUsernames;
+
+    /**
+     * The number of seconds for which a username that does not exist is remembered, during which any attempt to log
+     * in as that user is refused without looking it up again; zero (the default) to disable.
+     *
+     * <p>
+     *     Ignored if users are {@link #getAutoCreateUser() automatically created}.  An entry is discarded as soon as
+     *     a user of that name is created through the {@link ApplicationUserRepository}.
+     * </p>
+     */
+    public int getUnknownUserCacheTimeToLive() {
+        return unknownUserCacheTimeToLive;
+    }
+
+    public void setUnknownUserCacheTimeToLive(int unknownUserCacheTimeToLive) {
+        this.unknownUserCacheTimeToLive = unknownUserCacheTimeToLive;
+        this.unknownUsernames =
+                unknownUserCacheTimeToLive > 0
+                        ? CacheBuilder.newBuilder()
+                                .expireAfterWrite(unknownUserCacheTimeToLive, TimeUnit.SECONDS)
+                                .maximumSize(UNKNOWN_USER_CACHE_MAXIMUM_SIZE)
+                                .<String, Boolean>build()
+                        : null;
+    }
+
+    private boolean isKnownToBeUnknownUsername(final String username) {
+        final com.google.common.cache.Cache<String, Boolean> unknownUsernames = this.unknownUsernames;
+        return unknownUsernames != null && username != null && unknownUsernames.getIfPresent(username) != null;
+    }
+
+    private void rememberUnknownUsername(final String username) {
+        final com.google.common.cache.Cache<String, Boolean> unknownUsernames = this.unknownUsernames;
+        if(unknownUsernames != null && username != null && !(hasDelegateAuthenticationRealm() && getAutoCreateUser())) {
+            unknownUsernames.put(username, Boolean.TRUE);
+        }
+    }
+
+    //endregion
+
+    //region > usernameThrottle, remoteAddressThrottle
+
+    /**
+     * Maximum number of usernames (or remote addresses) whose failed logins are tracked.
+     */
+    private static final int LOGIN_THROTTLE_MAXIMUM_SIZE = 100000;
+
+    private int usernameThrottleCapacity = 0;
+    private int usernameThrottleRefillSeconds = 60;
+    private volatile LoginThrottle usernameThrottle;
+
+    private int remoteAddressThrottleCapacity = 0;
+    private int remoteAddressThrottleRefillSeconds = 60;
+    private volatile LoginThrottle remoteAddressThrottle;
+
+    /**
+     * The number of failed logins permitted for any given username in a burst, after which further attempts are
+     * refused (with an {@link ExcessiveAttemptsException}, and without looking up the user or checking their
+     * password) until the allowance is {@link #getUsernameThrottleRefillSeconds() replenished}; zero (the default)
+     * to disable.  The allowance is restored in full by a successful login.
+     */
+    public int getUsernameThrottleCapacity() {
+        return usernameThrottleCapacity;
+    }
+
+    public void setUsernameThrottleCapacity(int usernameThrottleCapacity) {
+        this.usernameThrottleCapacity = usernameThrottleCapacity;
+        this.usernameThrottle = newLoginThrottle(usernameThrottleCapacity, usernameThrottleRefillSeconds);
+    }
+
+    /**
+     * The number of seconds after which one further attempt is added back to a username's allowance (of
+     * {@link #getUsernameThrottleCapacity()}); defaults to 60.
+     */
+    public int getUsernameThrottleRefillSeconds() {
+        return usernameThrottleRefillSeconds;
+    }
+
+    public void setUsernameThrottleRefillSeconds(int usernameThrottleRefillSeconds) {
+        this.usernameThrottleRefillSeconds = usernameThrottleRefillSeconds;
+        this.usernameThrottle = newLoginThrottle(usernameThrottleCapacity, usernameThrottleRefillSeconds);
+    }
+
+    /**
+     * As {@link #getUsernameThrottleCapacity()}, but for failed logins (of any user) from any given remote address,
+     * as {@link UsernamePasswordToken#getHost() provided} by the Shiro authentication filter.
+     */
+    public int getRemoteAddressThrottleCapacity() {
+        return remoteAddressThrottleCapacity;
+    }
+
+    public void setRemoteAddressThrottleCapacity(int remoteAddressThrottleCapacity) {
+        this.remoteAddressThrottleCapacity = remoteAddressThrottleCapacity;
+        this.remoteAddressThrottle = newLoginThrottle(remoteAddressThrottleCapacity, remoteAddressThrottleRefillSeconds);
+    }
+
+    /**
+     * As {@link #getUsernameThrottleRefillSeconds()}, but for {@link #getRemoteAddressThrottleCapacity()}.
+     */
+    public int getRemoteAddressThrottleRefillSeconds() {
+        return remoteAddressThrottleRefillSeconds;
+    }
+
+    public void setRemoteAddressThrottleRefillSeconds(int remoteAddressThrottleRefillSeconds) {
+        this.remoteAddressThrottleRefillSeconds = remoteAddressThrottleRefillSeconds;
+        this.remoteAddressThrottle = newLoginThrottle(remoteAddressThrottleCapacity, remoteAddressThrottleRefillSeconds);
+    }
+
+    private static LoginThrottle newLoginThrottle(final int capacity, final int refillSeconds) {
+        return capacity > 0 && refillSeconds > 0
+                ? new LoginThrottle(capacity, refillSeconds, LOGIN_THROTTLE_MAXIMUM_SIZE)
+                : null;
+    }
+
+    private boolean isLoginThrottled(final String username, final String remoteAddress) {
+        final LoginThrottle usernameThrottle = this.usernameThrottle;
+        final LoginThrottle remoteAddressThrottle = this.remoteAddressThrottle;
+        return usernameThrottle != null && usernameThrottle.isExhausted(username) ||
+               remoteAddressThrottle != null && remoteAddressThrottle.isExhausted(remoteAddress);
+    }
+
+    private void recordFailedLogin(final String username, final String remoteAddress) {
+        final LoginThrottle usernameThrottle = this.usernameThrottle;
+        if(usernameThrottle != null) {
+            usernameThrottle.recordFailure(username);
+        }
+        final LoginThrottle remoteAddressThrottle = this.remoteAddressThrottle;
+        if(remoteAddressThrottle != null) {
+            remoteAddressThrottle.recordFailure(remoteAddress);
+        }
+    }
+
+    private void recordSuccessfulLogin(final String username) {
+        final LoginThrottle usernameThrottle = this.usernameThrottle;
+        if(usernameThrottle != null) {
+            usernameThrottle.reset(username);
+        }
+    }
+
+    //endregion
+
+    //region > metrics, metricsObjectName
+
+    private final IsisModuleSecurityRealmMetrics metrics = new IsisModuleSecurityRealmMetrics();
+
+    /**
+     * Counts of login outcomes, and latencies of each phase of authentication and authorization.
+     */
+    public IsisModuleSecurityRealmMetrics getMetrics() {
+        return metrics;
+    }
+
+    private String metricsObjectName;
+
+    /**
+     * The name under which the {@link #getMetrics() metrics} were registered, if any, to be unregistered when the
+     * realm is {@link #destroy() destroyed}.
+     */
+    private ObjectName registeredMetricsObjectName;
+
+    /**
+     * If set, then the {@link #getMetrics() metrics} are registered (as an {@link IsisModuleSecurityRealmMetricsMXBean})
+     * with the platform MBean server under this JMX object name, eg
+     * <tt>org.isisaddons.module.security:type=IsisModuleSecurityRealm</tt>, until the realm is
+     * {@link #destroy() destroyed}; any MBean already registered under that name is replaced.
+     */
+    public String getMetricsObjectName() {
+        return metricsObjectName;
+    }
+
+    public synchronized void setMetricsObjectName(final String metricsObjectName) {
+        unregisterMetrics();
+        if (metricsObjectName != null) {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            try {
+                final ObjectName objectName = new ObjectName(metricsObjectName);
+                unregisterIfRegistered(mBeanServer, objectName);
+                mBeanServer.registerMBean(metrics, objectName);
+                this.registeredMetricsObjectName = objectName;
+            } catch (JMException ex) {
+                throw new IllegalArgumentException("Unable to register metrics MBean as '" + metricsObjectName + "'", ex);
+            }
+        }
+        this.metricsObjectName = metricsObjectName;
+    }
+
+    private synchronized void unregisterMetrics() {
+        final ObjectName objectName = this.registeredMetricsObjectName;
+        this.registeredMetricsObjectName = null;
+        if (objectName == null) {
+            return;
+        }
+        try {
+            unregisterIfRegistered(ManagementFactory.getPlatformMBeanServer(), objectName);
+        } catch (JMException ex) {
+            // ignore; nothing more can be done
+        }
+    }
+
+    private static void unregisterIfRegistered(final MBeanServer mBeanServer, final ObjectName objectName) throws JMException {
+        if (mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    //endregion
+
     //region > execute (Isis integration)
 
+    /**
+     * Executes the closure within a transaction, reusing the current Isis session if there is one, otherwise within
+     * a new session.
+     */
     <V> V execute(final TransactionalClosureWithReturn<V> closure) {
+        if (isInSession()) {
+            getPersistenceSession().getServicesInjector().injectServicesInto(closure);
+            return doExecute(closure);
+        }
         return getSessionFactory().doInSession(
                 new Callable<V>() {
                     @Override
@@ -230,6 +1087,63 @@ public V call() {
         );
     }
 
+    private static final int OWN_TRANSACTION_THREADS = 4;
+    private static final int OWN_TRANSACTION_QUEUE_CAPACITY = 64;
+
+    /**
+     * Bounded, and only holding on to its threads while in use; shut down when the realm is {@link #destroy() destroyed}.
+     */
+    private final ThreadPoolExecutor ownTransactionExecutor = newOwnTransactionExecutor();
+
+    private static ThreadPoolExecutor newOwnTransactionExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                OWN_TRANSACTION_THREADS, OWN_TRANSACTION_THREADS,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(OWN_TRANSACTION_QUEUE_CAPACITY),
+                daemonThreadFactory("isis-module-security-own-transaction-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * As {@link #execute(TransactionalClosureWithReturn)}, but never joining the transaction of any current session:
+     * if there is one, then the closure is instead executed in a new session (on one of a small pool of threads), and
+     * this thread waits for it to complete.
+     */
+    <V> V executeInOwnTransaction(final TransactionalClosureWithReturn<V> closure) {
+        if (!isInSession()) {
+            return execute(closure);
+        }
+        final Future<V> future;
+        try {
+            future = ownTransactionExecutor.submit(new Callable<V>() {
+                @Override
+                public V call() {
+                    return execute(closure);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // too many concurrent requests, or the realm has been destroyed
+            throw new AuthenticationException(ex);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException(ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new AuthenticationException(cause);
+        }
+    }
+
+    boolean isInSession() {
+        return getSessionFactory().inSession();
+    }
+
     <V> V doExecute(final TransactionalClosureWithReturn<V> closure) {
         final PersistenceSession persistenceSession = getPersistenceSession();
         final IsisTransactionManager transactionManager = getTransactionManager(persistenceSession);
@@ -0,0 +1,232 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import com.google.common.eventbus.Subscribe;
+
+import org.apache.shiro.authc.AuthenticationException;
+
+import org.apache.isis.applib.annotation.DomainService;
+import org.apache.isis.applib.annotation.NatureOfService;
+import org.apache.isis.applib.annotation.Programmatic;
+import org.apache.isis.applib.services.eventbus.AbstractDomainEvent;
+import org.apache.isis.applib.services.eventbus.EventBusService;
+
+import org.isisaddons.module.security.dom.TransactionCompletionCallbacks;
+import org.isisaddons.module.security.dom.permission.ApplicationPermission;
+import org.isisaddons.module.security.dom.role.ApplicationRole;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+/**
+ * Invalidates the authorization info cached by the {@link IsisModuleSecurityRealm} (if any) whenever a user's roles,
+ * or a role's permissions, are changed through any of the module's actions; also invalidates the realm's cached
+ * verification of a user's credentials (along with the principal, and so the roles and permissions, cached with it)
+ * whenever that user, or any of its roles or their permissions, is changed.
+ *
+ * <p>
+ *     Each invalidation is applied immediately and then once more after the transaction completes, and so also
+ *     covers any entries re-cached by concurrent requests before the change was committed.
+ * </p>
+ *
+ * <p>
+ *     Invalidation is as selective as the event allows: a change to a user discards only that user's entry, a change
+ *     to a role or to one of its permissions discards only the entries of those users holding that role.  Renames and
+ *     deletions discard all entries.
+ * </p>
+ */
+@DomainService(
+        nature = NatureOfService.DOMAIN
+)
+public class IsisModuleSecurityRealmInvalidator {
+
+    //region > init, shutdown
+    @Programmatic
+    @PostConstruct
+    public void init() {
+        eventBusService.register(this);
+    }
+
+    @Programmatic
+    @PreDestroy
+    public void shutdown() {
+        eventBusService.unregister(this);
+    }
+    //endregion
+
+    //region > invalidateCredentials, invalidateAuthorizationInfoForRole (programmatic)
+
+    /**
+     * For changes to a user's credentials made programmatically, rather than through an action (and so without any
+     * domain event being raised).
+     */
+    @Programmatic
+    public void invalidateCredentials(final String username) {
+        invalidate(new RealmInvalidation() {
+            @Override
+            void invalidate(final IsisModuleSecurityRealm realm) {
+                realm.invalidateCredentials(username);
+            }
+        });
+    }
+
+    /**
+     * Discards the cached authorization info and verified credentials of the users holding the role.
+     *
+     * <p>
+     *     For changes to a role's permissions made programmatically (eg through
+     * {@link org.isisaddons.module.security.dom.permission.ApplicationPermissionRepository#newPermission(ApplicationRole, org.isisaddons.module.security.dom.permission.ApplicationPermissionRule, org.isisaddons.module.security.dom.permission.ApplicationPermissionMode, String, String, String)}),
+     * rather than through an action.
+     * </p>
+     */
+    @Programmatic
+    public void invalidateAuthorizationInfoForRole(final String roleName) {
+        invalidate(new RealmInvalidation() {
+            @Override
+            void invalidate(final IsisModuleSecurityRealm realm) {
+                realm.invalidateAuthorizationInfoForRole(roleName);
+                realm.invalidateCredentialsForRole(roleName);
+            }
+        });
+    }
+    //endregion
+
+    //region > on (event bus subscriptions)
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationUser.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTED) {
+            return;
+        }
+        if(ev instanceof ApplicationUser.UpdateUsernameDomainEvent || ev instanceof ApplicationUser.DeleteDomainEvent) {
+            invalidate(INVALIDATE_ALL);
+            return;
+        }
+        final String username = ev.getSource().getUsername();
+        invalidate(new RealmInvalidation() {
+            @Override
+            void invalidate(final IsisModuleSecurityRealm realm) {
+                realm.invalidateAuthorizationInfo(username);
+                realm.invalidateCredentials(username);
+            }
+        });
+    }
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationRole.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTED) {
+            return;
+        }
+        if(ev instanceof ApplicationRole.UpdateNameDomainEvent || ev instanceof ApplicationRole.DeleteDomainEvent) {
+            invalidate(INVALIDATE_ALL);
+            return;
+        }
+        if(ev instanceof ApplicationRole.AddUserDomainEvent || ev instanceof ApplicationRole.RemoveUserDomainEvent) {
+            final String username = ((ApplicationUser) ev.getArguments().get(0)).getUsername();
+            invalidate(new RealmInvalidation() {
+                @Override
+                void invalidate(final IsisModuleSecurityRealm realm) {
+                    realm.invalidateAuthorizationInfo(username);
+                    realm.invalidateCredentials(username);
+                }
+            });
+            return;
+        }
+        invalidateAuthorizationInfoForRole(ev.getSource().getName());
+    }
+
+    @Programmatic
+    @Subscribe
+    public void on(final ApplicationPermission.ActionDomainEvent ev) {
+        if(ev.getEventPhase() != AbstractDomainEvent.Phase.EXECUTED) {
+            return;
+        }
+        if(ev instanceof ApplicationPermission.UpdateRoleDomainEvent || ev instanceof ApplicationPermission.DeleteDomainEvent) {
+            invalidate(INVALIDATE_ALL);
+            return;
+        }
+        invalidateAuthorizationInfoForRole(ev.getSource().getRole().getName());
+    }
+    //endregion
+
+    //region > invalidate (helpers)
+
+    /**
+     * Applies the invalidation immediately (so that the current request sees the change), and then once more after
+     * the current transaction completes.
+     *
+     * <p>
+     *     Domain events are fired (and programmatic changes made) before the transaction commits, so a concurrent
+     *     request could otherwise re-cache the pre-commit state in the meantime.
+     * </p>
+     */
+    private void invalidate(final RealmInvalidation invalidation) {
+        invalidation.run();
+        if(transactionCompletionCallbacks != null) {
+            transactionCompletionCallbacks.afterCompletion(invalidation);
+        }
+    }
+
+    /**
+     * Does nothing if not running with Shiro (eg in integration tests).
+     */
+    abstract static class RealmInvalidation implements Runnable {
+        @Override
+        public void run() {
+            final IsisModuleSecurityRealm realm = realm();
+            if(realm != null) {
+                invalidate(realm);
+            }
+        }
+
+        abstract void invalidate(final IsisModuleSecurityRealm realm);
+    }
+
+    private static final RealmInvalidation INVALIDATE_ALL = new RealmInvalidation() {
+        @Override
+        void invalidate(final IsisModuleSecurityRealm realm) {
+            realm.invalidateAllAuthorizationInfo();
+            realm.invalidateAllCredentials();
+        }
+    };
+
+    /**
+     * The realm, or <tt>null</tt> if not running with Shiro (eg in integration tests).
+     */
+    private static IsisModuleSecurityRealm realm() {
+        try {
+            return ShiroUtils.getIsisModuleSecurityRealm();
+        } catch(AuthenticationException ex) {
+            return null;
+        }
+    }
+    //endregion
+
+    //region  >  (injected)
+    @Inject
+    EventBusService eventBusService;
+
+    @Inject
+    TransactionCompletionCallbacks transactionCompletionCallbacks;
+    //endregion
+
+}
@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
+
+/**
+ * Counters and {@link LatencyHistogram latency histograms} of the {@link IsisModuleSecurityRealm}: the outcome of
+ * each login, the time spent in each {@link Phase phase} of authentication and authorization, and the hits and misses
+ * of the memoized permission verdicts of the logged-in users.
+ *
+ * <p>
+ *     Obtained from {@link IsisModuleSecurityRealm#getMetrics()}, either to take a programmatic {@link #snapshot()}
+ *     or (if the realm's {@link IsisModuleSecurityRealm#getMetricsObjectName() metricsObjectName} is configured)
+ *     through JMX.  Recording is lock-free, amounting to a handful of atomic increments per phase.
+ * </p>
+ */
+public class IsisModuleSecurityRealmMetrics implements IsisModuleSecurityRealmMetricsMXBean {
+
+    public static enum Phase {
+        /**
+         * The whole of the realm's authentication of a token (successful or otherwise).
+         */
+        LOGIN,
+        /**
+         * Looking up the user (and its roles and permissions) from the database.
+         */
+        LOOKUP_PRINCIPAL,
+        /**
+         * Checking the password of a local account.
+         */
+        CHECK_PASSWORD,
+        /**
+         * Checking the credentials of a delegated account against the delegate realm.
+         */
+        DELEGATE_AUTHENTICATION,
+        /**
+         * Evaluating the user's permissions for a feature (excluding verdicts that had already been memoized).
+         */
+        PERMISSION_EVALUATION
+    }
+
+    public static enum LoginOutcome {
+        OK,
+        BAD_PASSWORD,
+        DISABLED,
+        UNKNOWN_USER,
+        /**
+         * Refused because of too many recent failed logins.
+         */
+        THROTTLED,
+        /**
+         * Refused because there were too many concurrent requests to hash passwords.
+         */
+        REJECTED,
+        /**
+         * Failed because of a misconfiguration (eg no password encryption service), or an error looking up the user.
+         */
+        ERROR
+    }
+
+    private final AtomicLongArray loginOutcomeCounts = new AtomicLongArray(LoginOutcome.values().length);
+    private final LatencyHistogram[] latencyByPhase;
+
+    /**
+     * The permission cache statistics as at the last {@link #reset()}, since those statistics cannot themselves be reset.
+     */
+    private volatile CacheStats permissionCacheStatsAtReset = PrincipalForApplicationUser.allPermissionCacheStats();
+
+    public IsisModuleSecurityRealmMetrics() {
+        final Phase[] phases = Phase.values();
+        latencyByPhase = new LatencyHistogram[phases.length];
+        for (final Phase phase : phases) {
+            latencyByPhase[phase.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    //region > record
+
+    void recordLoginOutcome(final LoginOutcome outcome) {
+        loginOutcomeCounts.incrementAndGet(outcome.ordinal());
+    }
+
+    /**
+     * @param startNanos - as obtained from {@link System#nanoTime()} at the start of the phase.
+     */
+    void recordLatency(final Phase phase, final long startNanos) {
+        latencyByPhase[phase.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    //endregion
+
+    //region > snapshot, reset
+
+    public Snapshot snapshot() {
+        final LoginOutcome[] outcomes = LoginOutcome.values();
+        final long[] outcomeCounts = new long[outcomes.length];
+        for (final LoginOutcome outcome : outcomes) {
+            outcomeCounts[outcome.ordinal()] = loginOutcomeCounts.get(outcome.ordinal());
+        }
+        final Phase[] phases = Phase.values();
+        final LatencyHistogram.Snapshot[] latencies = new LatencyHistogram.Snapshot[phases.length];
+        for (final Phase phase : phases) {
+            latencies[phase.ordinal()] = latencyByPhase[phase.ordinal()].snapshot();
+        }
+        return new Snapshot(outcomeCounts, latencies, permissionCacheStats());
+    }
+
+    /**
+     * Of the verdicts memoized by all principals (of any realm, since they share the same memoized verdicts for the
+     * same permission set), since the last {@link #reset()}.
+     */
+    private CacheStats permissionCacheStats() {
+        return PrincipalForApplicationUser.allPermissionCacheStats().minus(permissionCacheStatsAtReset);
+    }
+
+    @Override
+    public void reset() {
+        permissionCacheStatsAtReset = PrincipalForApplicationUser.allPermissionCacheStats();
+        for (final LoginOutcome outcome : LoginOutcome.values()) {
+            loginOutcomeCounts.set(outcome.ordinal(), 0L);
+        }
+        for (final LatencyHistogram histogram : latencyByPhase) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Immutable copy of the {@link IsisModuleSecurityRealmMetrics}.
+     */
+    public static final class Snapshot {
+
+        private final long[] loginOutcomeCounts;
+        private final LatencyHistogram.Snapshot[] latencyByPhase;
+        private final CacheStats permissionCacheStats;
+
+        private Snapshot(
+                final long[] loginOutcomeCounts,
+                final LatencyHistogram.Snapshot[] latencyByPhase,
+                final CacheStats permissionCacheStats) {
+            this.loginOutcomeCounts = loginOutcomeCounts;
+            this.latencyByPhase = latencyByPhase;
+            this.permissionCacheStats = permissionCacheStats;
+        }
+
+        public long getLoginOutcomeCount(final LoginOutcome outcome) {
+            return loginOutcomeCounts[outcome.ordinal()];
+        }
+
+        public LatencyHistogram.Snapshot getLatency(final Phase phase) {
+            return latencyByPhase[phase.ordinal()];
+        }
+
+        /**
+         * Hits, misses and evictions of the memoized permission verdicts.
+         */
+        public CacheStats getPermissionCacheStats() {
+            return permissionCacheStats;
+        }
+    }
+
+    //endregion
+
+    //region > IsisModuleSecurityRealmMetricsMXBean
+
+    @Override
+    public Map<String, Long> getLoginOutcomeCounts() {
+        final Snapshot snapshot = snapshot();
+        final Map<String, Long> counts = Maps.newLinkedHashMap();
+        for (final LoginOutcome outcome : LoginOutcome.values()) {
+            counts.put(outcome.name(), snapshot.getLoginOutcomeCount(outcome));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getPermissionCacheCounts() {
+        final CacheStats stats = permissionCacheStats();
+        final Map<String, Long> counts = Maps.newLinkedHashMap();
+        counts.put("HITS", stats.hitCount());
+        counts.put("MISSES", stats.missCount());
+        counts.put("EVICTIONS", stats.evictionCount());
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        final Map<String, Long> values = Maps.newLinkedHashMap();
+        for (final Phase phase : Phase.values()) {
+            values.put(phase.name(), latencyByPhase[phase.ordinal()].snapshot().getCount());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMeanMicros() {
+        final Map<String, Long> values = Maps.newLinkedHashMap();
+        for (final Phase phase : Phase.values()) {
+            values.put(phase.name(), latencyByPhase[phase.ordinal()].snapshot().getMeanMicros());
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMedianMicros() {
+        return phaseValueAtPercentileMicros(50.0);
+    }
+
+    @Override
+    public Map<String, Long> getPhase99thPercentileMicros() {
+        return phaseValueAtPercentileMicros(99.0);
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMaxMicros() {
+        final Map<String, Long> values = Maps.newLinkedHashMap();
+        for (final Phase phase : Phase.values()) {
+            values.put(phase.name(), latencyByPhase[phase.ordinal()].snapshot().getMaxMicros());
+        }
+        return values;
+    }
+
+    private Map<String, Long> phaseValueAtPercentileMicros(final double percentile) {
+        final Map<String, Long> values = Maps.newLinkedHashMap();
+        for (final Phase phase : Phase.values()) {
+            values.put(phase.name(), latencyByPhase[phase.ordinal()].snapshot().getValueAtPercentileMicros(percentile));
+        }
+        return values;
+    }
+
+    //endregion
+
+}
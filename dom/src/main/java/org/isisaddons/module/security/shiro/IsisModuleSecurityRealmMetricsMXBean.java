@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link IsisModuleSecurityRealmMetrics}, registered if the realm's
+ * {@link IsisModuleSecurityRealm#getMetricsObjectName() metricsObjectName} is configured.
+ *
+ * <p>
+ *     Latencies are keyed by {@link IsisModuleSecurityRealmMetrics.Phase phase}, and are in microseconds.
+ * </p>
+ */
+public interface IsisModuleSecurityRealmMetricsMXBean {
+
+    Map<String, Long> getLoginOutcomeCounts();
+
+    /**
+     * Hits, misses and evictions of the memoized permission verdicts.
+     */
+    Map<String, Long> getPermissionCacheCounts();
+
+    Map<String, Long> getPhaseCounts();
+
+    Map<String, Long> getPhaseMeanMicros();
+
+    Map<String, Long> getPhaseMedianMicros();
+
+    Map<String, Long> getPhase99thPercentileMicros();
+
+    Map<String, Long> getPhaseMaxMicros();
+
+    void reset();
+
+}
@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of latencies (in nanoseconds), with log-linear buckets in the style of an HDR histogram: each
+ * power of two is divided into 8 linear sub-buckets, so that any recorded value is accurate to within 12.5%, over
+ * the full range of <tt>long</tt>, using a fixed (and small) number of counters.
+ *
+ * <p>
+ *     Recording is lock-free and allocation-free.  A {@link #snapshot() snapshot} taken while values are being recorded
+ *     is not necessarily consistent (eg its count may not quite match the sum of its buckets), which is acceptable
+ *     for monitoring purposes.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max;
+        while(value > (max = maxNanos.get())) {
+            if(maxNanos.compareAndSet(max, value)) {
+                break;
+            }
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0L);
+        }
+        count.set(0L);
+        totalNanos.set(0L);
+        maxNanos.set(0L);
+    }
+
+    public Snapshot snapshot() {
+        final long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+        return new Snapshot(bucketCounts, count.get(), totalNanos.get(), maxNanos.get());
+    }
+
+    static int bucketOf(final long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * The largest value that would be recorded in the bucket.
+     */
+    static long upperBoundOf(final int bucket) {
+        if(bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final long subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        final long lowerBound = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowerBound + ((1L << shift) - 1);
+    }
+
+    /**
+     * Immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        private final long[] bucketCounts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(final long[] bucketCounts, final long count, final long totalNanos, final long maxNanos) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count > 0 ? totalNanos / count : 0L;
+        }
+
+        /**
+         * The (upper bound of the) value at or below which the given percentage of recorded values fall; zero if
+         * nothing has been recorded.
+         *
+         * @param percentile - between 0 and 100.
+         */
+        public long getValueAtPercentileNanos(final double percentile) {
+            long total = 0;
+            for (final long bucketCount : bucketCounts) {
+                total += bucketCount;
+            }
+            if(total == 0) {
+                return 0L;
+            }
+            final long rank = Math.max(1L, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+            long cumulative = 0;
+            for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+                cumulative += bucketCounts[bucket];
+                if(cumulative >= rank) {
+                    return Math.min(upperBoundOf(bucket), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public long getMeanMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(getMeanNanos());
+        }
+
+        public long getMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(getMaxNanos());
+        }
+
+        public long getValueAtPercentileMicros(final double percentile) {
+            return TimeUnit.NANOSECONDS.toMicros(getValueAtPercentileNanos(percentile));
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Token-bucket throttle of failed logins, keyed (for example) by username or by remote address.
+ *
+ * <p>
+ *     Each key may fail up to <tt>capacity</tt> times in a burst, after which further attempts are
+ *     {@link #isExhausted(String) refused} until the bucket refills, at the rate of one attempt every
+ *     <tt>refillSeconds</tt>.  Only failures consume from the bucket, so a user who logs in successfully is never held
+ *     back by it.
+ * </p>
+ *
+ * <p>
+ *     Each bucket is an immutable value updated by compare-and-set, so that there is no locking on the login path.
+ *     The buckets themselves are held in a (segmented) Guava cache, and are evicted once they would have refilled
+ *     completely anyway; the cache is also bounded in size, so that a flood of distinct keys cannot exhaust memory.
+ * </p>
+ */
+class LoginThrottle {
+
+    private static class Bucket {
+        private final double tokens;
+        private final long updatedNanos;
+
+        private Bucket(final double tokens, final long updatedNanos) {
+            this.tokens = tokens;
+            this.updatedNanos = updatedNanos;
+        }
+    }
+
+    private final int capacity;
+    private final double tokensPerNano;
+    private final Ticker ticker;
+    private final Cache<String, AtomicReference<Bucket>> bucketsByKey;
+
+    LoginThrottle(final int capacity, final int refillSeconds, final int maximumSize) {
+        this(capacity, refillSeconds, maximumSize, Ticker.systemTicker());
+    }
+
+    LoginThrottle(final int capacity, final int refillSeconds, final int maximumSize, final Ticker ticker) {
+        this.capacity = capacity;
+        this.tokensPerNano = 1.0 / TimeUnit.SECONDS.toNanos(refillSeconds);
+        this.ticker = ticker;
+        this.bucketsByKey = CacheBuilder.newBuilder()
+                .expireAfterAccess((long) capacity * refillSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Whether the key has used up its allowance of failed attempts (and so should not be permitted another attempt
+     * for now).
+     */
+    boolean isExhausted(final String key) {
+        if(key == null) {
+            return false;
+        }
+        final AtomicReference<Bucket> bucketRef = bucketsByKey.getIfPresent(key);
+        if(bucketRef == null) {
+            return false;
+        }
+        return tokensOf(bucketRef.get(), ticker.read()) < 1.0;
+    }
+
+    /**
+     * Consumes one attempt from the key's allowance.
+     */
+    void recordFailure(final String key) {
+        if(key == null) {
+            return;
+        }
+        AtomicReference<Bucket> bucketRef = bucketsByKey.getIfPresent(key);
+        if(bucketRef == null) {
+            final AtomicReference<Bucket> newBucketRef =
+                    new AtomicReference<Bucket>(new Bucket(capacity, ticker.read()));
+            bucketRef = bucketsByKey.asMap().putIfAbsent(key, newBucketRef);
+            if(bucketRef == null) {
+                bucketRef = newBucketRef;
+            }
+        }
+        while(true) {
+            final Bucket bucket = bucketRef.get();
+            final long now = ticker.read();
+            final double tokens = Math.max(0.0, tokensOf(bucket, now) - 1.0);
+            if(bucketRef.compareAndSet(bucket, new Bucket(tokens, now))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Restores the key's full allowance.
+     */
+    void reset(final String key) {
+        if(key == null) {
+            return;
+        }
+        bucketsByKey.invalidate(key);
+    }
+
+    private double tokensOf(final Bucket bucket, final long now) {
+        final long elapsedNanos = Math.max(0L, now - bucket.updatedNanos);
+        return Math.min(capacity, bucket.tokens + elapsedNanos * tokensPerNano);
+    }
+
+}
@@ -35,14 +35,18 @@ class PermissionForMember implements org.apache.shiro.authz.Permission {
      * Expects in format <code>package:className:methodName:r|w</code>
      */
     public PermissionForMember(String permissionString) {
-        final String[] split = permissionString.split("\\:");
-        if(split.length == 4) {
-            String packageName = split[0];
-            String className = split[1];
-            String memberName = split[2];
+        // parsed using indexOf rather than String#split, since called for every permission check
+        final int classStart = permissionString.indexOf(':') + 1;
+        final int memberStart = classStart > 0 ? permissionString.indexOf(':', classStart) + 1 : 0;
+        final int modeStart = memberStart > 0 ? permissionString.indexOf(':', memberStart) + 1 : 0;
+        final int modeEnd = modeStart > 0 ? endOfLastSegment(permissionString, modeStart) : -1;
+        if(modeEnd >= 0) {
+            final String packageName = permissionString.substring(0, classStart - 1);
+            final String className = permissionString.substring(classStart, memberStart - 1);
+            final String memberName = permissionString.substring(memberStart, modeStart - 1);
             this.featureId = ApplicationFeatureId.newMember(packageName + "." + className, memberName);
 
-            ApplicationPermissionMode mode = modeFrom(split[3]);
+            ApplicationPermissionMode mode = modeFrom(permissionString.substring(modeStart, modeEnd));
             if(mode != null) {
                 this.mode = mode;
                 return;
@@ -51,6 +55,23 @@ public PermissionForMember(String permissionString) {
         throw new IllegalArgumentException("Invalid format for permission: " + permissionString + "; expected 'packageName:className:methodName:r|w");
     }
 
+    /**
+     * The end of the segment starting at <code>start</code>, provided that it is the last segment; as per
+     * {@link String#split(String)}, any trailing separators are ignored.  Otherwise returns -1.
+     */
+    private static int endOfLastSegment(final String permissionString, final int start) {
+        final int end = permissionString.indexOf(':', start);
+        if(end == -1) {
+            return permissionString.length();
+        }
+        for (int i = end + 1; i < permissionString.length(); i++) {
+            if(permissionString.charAt(i) != ':') {
+                return -1;
+            }
+        }
+        return end;
+    }
+
     private static ApplicationPermissionMode modeFrom(String s) {
         if("r".equals(s)) {
             return ApplicationPermissionMode.VIEWING;
@@ -20,6 +20,9 @@
 import java.util.Collections;
 import java.util.Set;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -27,6 +30,9 @@
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.Permission;
 
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
 import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
 import org.isisaddons.module.security.dom.role.ApplicationRole;
 import org.isisaddons.module.security.dom.user.AccountType;
@@ -46,12 +52,42 @@
  *     creating an adapter object for the appropriate Shiro API.
  * </p>
  *
+ * <p>
+ *     In addition, the verdicts of the permission set are memoized (per {@link ApplicationPermissionMode mode}) in a
+ *     bounded concurrent cache, so that a member checked repeatedly over the lifetime of the session is only
+ *     ever evaluated once.  Since users with the same roles share the same (canonical) permission set instance,
+ *     these memoized verdicts are likewise shared by all of the principals holding that instance.
+ * </p>
+ *
  * TODO: this should probably implement java.security.Principal so that it doesn't get wrapped in a
  * ShiroHttpServletRequest.ObjectPrincipal.  Such a change would need some testing to avoid regressions, though.
  */
 class PrincipalForApplicationUser implements AuthorizationInfo {
 
+    /**
+     * Default maximum number of verdicts memoized for each {@link ApplicationPermissionMode mode}.
+     */
+    static final int DEFAULT_PERMISSION_CACHE_SIZE = 1000;
+
     public static PrincipalForApplicationUser from(ApplicationUser applicationUser) {
+        return from(applicationUser, DEFAULT_PERMISSION_CACHE_SIZE);
+    }
+
+    /**
+     * @param permissionCacheSize - maximum number of verdicts to memoize per {@link ApplicationPermissionMode mode}; if zero then no memoization is performed.
+     */
+    public static PrincipalForApplicationUser from(ApplicationUser applicationUser, final int permissionCacheSize) {
+        return from(applicationUser, permissionCacheSize, null);
+    }
+
+    /**
+     * @param permissionCacheSize - maximum number of verdicts to memoize per {@link ApplicationPermissionMode mode}; if zero then no memoization is performed.
+     * @param metrics - if not <tt>null</tt>, to which the time taken to evaluate permissions is recorded.
+     */
+    static PrincipalForApplicationUser from(
+            final ApplicationUser applicationUser,
+            final int permissionCacheSize,
+            final IsisModuleSecurityRealmMetrics metrics) {
         if(applicationUser == null) {
             return null;
         }
@@ -60,7 +96,7 @@ public static PrincipalForApplicationUser from(ApplicationUser applicationUser)
         final AccountType accountType = applicationUser.getAccountType();
         final Set<String> roles = Sets.newTreeSet(Lists.newArrayList(Iterables.transform(applicationUser.getRoles(), ApplicationRole.Functions.GET_NAME)));
         final ApplicationPermissionValueSet permissionSet = applicationUser.getPermissionSet();
-        return new PrincipalForApplicationUser(username, encryptedPassword, accountType, applicationUser.getStatus(), roles, permissionSet);
+        return new PrincipalForApplicationUser(username, encryptedPassword, accountType, applicationUser.getStatus(), roles, permissionSet, permissionCacheSize, metrics);
     }
 
     private final String username;
@@ -69,6 +105,31 @@ public static PrincipalForApplicationUser from(ApplicationUser applicationUser)
     private final ApplicationUserStatus status;
     private final AccountType accountType;
     private final ApplicationPermissionValueSet permissionSet;
+    private final int permissionCacheSize;
+
+    /**
+     * Memoized verdicts of {@link #permissionSet}, indexed by {@link ApplicationPermissionMode#ordinal() mode};
+     * <tt>null</tt> if memoization is disabled.
+     *
+     * <p>
+     *     Not serialized; rebuilt by {@link #readResolve()}.
+     * </p>
+     */
+    private final transient Cache<ApplicationFeatureId, Boolean>[] grantsByMode;
+
+    /**
+     * Registry of memoized verdicts, keyed by the identity of the permission set and held only for as long as
+     * that permission set is itself referenced by some principal.
+     */
+    private static final Cache<ApplicationPermissionValueSet, Cache<ApplicationFeatureId, Boolean>[]> grantsByModeByPermissionSet =
+            CacheBuilder.newBuilder().weakKeys().build();
+
+    private final transient Collection<Permission> objectPermissions;
+
+    /**
+     * Optional; not serialized.
+     */
+    private final transient IsisModuleSecurityRealmMetrics metrics;
 
     PrincipalForApplicationUser(
             final String username,
@@ -77,12 +138,107 @@ public static PrincipalForApplicationUser from(ApplicationUser applicationUser)
             final ApplicationUserStatus status,
             final Set<String> roles,
             final ApplicationPermissionValueSet applicationPermissionValueSet) {
+        this(username, encryptedPassword, accountType, status, roles, applicationPermissionValueSet, DEFAULT_PERMISSION_CACHE_SIZE);
+    }
+
+    PrincipalForApplicationUser(
+            final String username,
+            final String encryptedPassword,
+            final AccountType accountType,
+            final ApplicationUserStatus status,
+            final Set<String> roles,
+            final ApplicationPermissionValueSet applicationPermissionValueSet,
+            final int permissionCacheSize) {
+        this(username, encryptedPassword, accountType, status, roles, applicationPermissionValueSet, permissionCacheSize, null);
+    }
+
+    PrincipalForApplicationUser(
+            final String username,
+            final String encryptedPassword,
+            final AccountType accountType,
+            final ApplicationUserStatus status,
+            final Set<String> roles,
+            final ApplicationPermissionValueSet applicationPermissionValueSet,
+            final int permissionCacheSize,
+            final IsisModuleSecurityRealmMetrics metrics) {
         this.username = username;
         this.encryptedPassword = encryptedPassword;
         this.accountType = accountType;
         this.roles = roles;
         this.status = status;
         this.permissionSet = applicationPermissionValueSet;
+        this.permissionCacheSize = permissionCacheSize;
+        this.metrics = metrics;
+        this.grantsByMode = permissionCacheSize > 0 ? grantsByModeFor(applicationPermissionValueSet, permissionCacheSize) : null;
+        this.objectPermissions = Collections.<Permission>singleton(new Permission() {
+            @Override
+            public boolean implies(Permission p) {
+                if (!(p instanceof PermissionForMember)) {
+                    return false;
+                }
+                final PermissionForMember pfm = (PermissionForMember) p;
+                return grants(pfm.getFeatureId(), pfm.getMode());
+            }
+        });
+    }
+
+    private static Cache<ApplicationFeatureId, Boolean>[] grantsByModeFor(
+            final ApplicationPermissionValueSet permissionSet,
+            final int permissionCacheSize) {
+        if(permissionSet == null) {
+            return newGrantsByMode(permissionCacheSize);
+        }
+        final Cache<ApplicationFeatureId, Boolean>[] grantsByMode = grantsByModeByPermissionSet.getIfPresent(permissionSet);
+        if(grantsByMode != null) {
+            return grantsByMode;
+        }
+        final Cache<ApplicationFeatureId, Boolean>[] newGrantsByMode = newGrantsByMode(permissionCacheSize);
+        final Cache<ApplicationFeatureId, Boolean>[] existingGrantsByMode =
+                grantsByModeByPermissionSet.asMap().putIfAbsent(permissionSet, newGrantsByMode);
+        return existingGrantsByMode != null ? existingGrantsByMode : newGrantsByMode;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cache<ApplicationFeatureId, Boolean>[] newGrantsByMode(final int permissionCacheSize) {
+        final ApplicationPermissionMode[] modes = ApplicationPermissionMode.values();
+        final Cache<ApplicationFeatureId, Boolean>[] grantsByMode = new Cache[modes.length];
+        for (final ApplicationPermissionMode mode : modes) {
+            grantsByMode[mode.ordinal()] = CacheBuilder.newBuilder()
+                    .maximumSize(permissionCacheSize)
+                    .recordStats()
+                    .<ApplicationFeatureId, Boolean>build();
+        }
+        return grantsByMode;
+    }
+
+    private static final CacheStats NO_STATS = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    /**
+     * Hit/miss statistics of the memoized verdicts (across all modes, and across all principals sharing the same
+     * permission set), or <tt>null</tt> if memoization is disabled.
+     */
+    CacheStats getPermissionCacheStats() {
+        return grantsByMode != null ? statsOf(grantsByMode) : null;
+    }
+
+    /**
+     * Hit/miss statistics of the memoized verdicts of all principals, aggregated over every permission set still
+     * referenced by some principal.
+     */
+    static CacheStats allPermissionCacheStats() {
+        CacheStats stats = NO_STATS;
+        for (final Cache<ApplicationFeatureId, Boolean>[] grantsByMode : grantsByModeByPermissionSet.asMap().values()) {
+            stats = stats.plus(statsOf(grantsByMode));
+        }
+        return stats;
+    }
+
+    private static CacheStats statsOf(final Cache<ApplicationFeatureId, Boolean>[] grantsByMode) {
+        CacheStats stats = NO_STATS;
+        for (final Cache<ApplicationFeatureId, Boolean> grants : grantsByMode) {
+            stats = stats.plus(grants.stats());
+        }
+        return stats;
     }
 
     public boolean isDisabled() {
@@ -101,17 +257,43 @@ public Collection<String> getStringPermissions() {
 
     @Override
     public Collection<Permission> getObjectPermissions() {
-        final Permission o = new Permission() {
-            @Override
-            public boolean implies(Permission p) {
-                if (!(p instanceof PermissionForMember)) {
-                    return false;
-                }
-                final PermissionForMember pfm = (PermissionForMember) p;
-                return getPermissionSet().grants(pfm.getFeatureId(), pfm.getMode());
-            }
-        };
-        return Collections.singleton(o);
+        return objectPermissions;
+    }
+
+    /**
+     * As per {@link ApplicationPermissionValueSet#grants(ApplicationFeatureId, ApplicationPermissionMode)}, but memoized.
+     */
+    boolean grants(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        if(grantsByMode == null) {
+            return evaluate(featureId, mode);
+        }
+        final Cache<ApplicationFeatureId, Boolean> grants = grantsByMode[mode.ordinal()];
+        Boolean granted = grants.getIfPresent(featureId);
+        if(granted == null) {
+            granted = evaluate(featureId, mode);
+            grants.put(featureId, granted);
+        }
+        return granted;
+    }
+
+    private boolean evaluate(final ApplicationFeatureId featureId, final ApplicationPermissionMode mode) {
+        if(metrics == null) {
+            return getPermissionSet().grants(featureId, mode);
+        }
+        final long startNanos = System.nanoTime();
+        try {
+            return getPermissionSet().grants(featureId, mode);
+        } finally {
+            metrics.recordLatency(IsisModuleSecurityRealmMetrics.Phase.PERMISSION_EVALUATION, startNanos);
+        }
+    }
+
+    /**
+     * The memoized verdicts and the object permission adapter are transient (as are any metrics), so are
+     * rebuilt from the permission set when a principal is deserialized (eg from a persisted or replicated session).
+     */
+    private Object readResolve() {
+        return new PrincipalForApplicationUser(username, encryptedPassword, accountType, status, roles, permissionSet, permissionCacheSize);
     }
 
     ApplicationUserStatus getStatus() {
@@ -28,7 +28,29 @@ public final class ShiroUtils {
     private ShiroUtils() {
     }
 
-    public static synchronized RealmSecurityManager getSecurityManager() {
+    /**
+     * The security manager (and its realms) as last resolved, along with the {@link IsisModuleSecurityRealm} found
+     * among them.  Immutable, and published through a volatile field, so that it may be read without locking.
+     */
+    private static final class Resolved {
+        private final RealmSecurityManager securityManager;
+        private final Collection<Realm> realms;
+        private final IsisModuleSecurityRealm isisModuleSecurityRealm;
+
+        private Resolved(final RealmSecurityManager securityManager) {
+            this.securityManager = securityManager;
+            this.realms = securityManager.getRealms();
+            this.isisModuleSecurityRealm = findIsisModuleSecurityRealm(realms);
+        }
+
+        private boolean isFor(final RealmSecurityManager securityManager) {
+            return this.securityManager == securityManager && this.realms == securityManager.getRealms();
+        }
+    }
+
+    private static volatile Resolved resolved;
+
+    public static RealmSecurityManager getSecurityManager() {
         org.apache.shiro.mgt.SecurityManager securityManager;
         try {
             securityManager = SecurityUtils.getSecurityManager();
@@ -41,9 +63,25 @@ public static synchronized RealmSecurityManager getSecurityManager() {
         return (RealmSecurityManager) securityManager;
     }
 
+    /**
+     * Resolved only when Shiro's security manager (or its set of realms) is first seen or has since been replaced;
+     * otherwise returns the previously resolved realm without iterating over the realms or taking any lock.
+     */
     public static IsisModuleSecurityRealm getIsisModuleSecurityRealm() {
         final RealmSecurityManager securityManager = getSecurityManager();
-        final Collection<Realm> realms = securityManager.getRealms();
+        Resolved resolved = ShiroUtils.resolved;
+        if(resolved == null || !resolved.isFor(securityManager)) {
+            // benign race: concurrent callers may each resolve, but will all publish equivalent results
+            resolved = new Resolved(securityManager);
+            ShiroUtils.resolved = resolved;
+        }
+        return resolved.isisModuleSecurityRealm;
+    }
+
+    private static IsisModuleSecurityRealm findIsisModuleSecurityRealm(final Collection<Realm> realms) {
+        if(realms == null) {
+            return null;
+        }
         for (Realm realm : realms) {
             if(realm instanceof IsisModuleSecurityRealm) {
                 IsisModuleSecurityRealm imsr = (IsisModuleSecurityRealm) realm;
@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Short-lived cache of successfully verified credentials, so that clients that authenticate on every request (such
+ * as Restful Objects clients using basic auth) need not have their user looked up and their password re-hashed each time.
+ *
+ * <p>
+ *     Entries are keyed by username, and hold a keyed hash (HMAC-SHA256) of the credentials that were presented along
+ *     with the resultant principal.  The key is randomly generated for each instance and never leaves memory, so the
+ *     cached hashes are of no use outside of this JVM.  A lookup only succeeds if the same credentials are presented
+ *     again within the time-to-live.
+ * </p>
+ */
+class VerifiedCredentialsCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class VerifiedCredentials {
+        private final byte[] credentialsHash;
+        private final PrincipalForApplicationUser principal;
+
+        private VerifiedCredentials(final byte[] credentialsHash, final PrincipalForApplicationUser principal) {
+            this.credentialsHash = credentialsHash;
+            this.principal = principal;
+        }
+    }
+
+    private final SecretKeySpec key;
+    private final Cache<String, VerifiedCredentials> verifiedCredentialsByUsername;
+
+    VerifiedCredentialsCache(final int timeToLiveSeconds, final int maximumSize) {
+        final byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        this.verifiedCredentialsByUsername = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLiveSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * The principal previously {@link #put(String, char[], PrincipalForApplicationUser) verified} for exactly these
+     * credentials, or <tt>null</tt> if none (or if expired).
+     */
+    PrincipalForApplicationUser lookup(final String username, final char[] password) {
+        if(username == null || password == null) {
+            return null;
+        }
+        final VerifiedCredentials verifiedCredentials = verifiedCredentialsByUsername.getIfPresent(username);
+        if(verifiedCredentials == null) {
+            return null;
+        }
+        return MessageDigest.isEqual(verifiedCredentials.credentialsHash, hash(username, password))
+                ? verifiedCredentials.principal
+                : null;
+    }
+
+    void put(final String username, final char[] password, final PrincipalForApplicationUser principal) {
+        if(username == null || password == null) {
+            return;
+        }
+        verifiedCredentialsByUsername.put(username, new VerifiedCredentials(hash(username, password), principal));
+    }
+
+    void invalidate(final String username) {
+        verifiedCredentialsByUsername.invalidate(username);
+    }
+
+    /**
+     * Discards the entries of those users whose principal holds the specified role (or whose roles are not known).
+     */
+    void invalidateForRole(final String roleName) {
+        for (final Map.Entry<String, VerifiedCredentials> entry : verifiedCredentialsByUsername.asMap().entrySet()) {
+            final Set<String> roles = entry.getValue().principal.getRoles();
+            if(roles == null || roles.contains(roleName)) {
+                verifiedCredentialsByUsername.asMap().remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    void invalidateAll() {
+        verifiedCredentialsByUsername.invalidateAll();
+    }
+
+    private byte[] hash(final String username, final char[] password) {
+        final Mac mac;
+        try {
+            mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+        mac.update(username.getBytes(UTF_8));
+        mac.update((byte) 0);
+        final ByteBuffer passwordBytes = UTF_8.encode(CharBuffer.wrap(password));
+        mac.update(passwordBytes.duplicate());
+        if(passwordBytes.hasArray()) {
+            // don't leave the plaintext lying around any longer than necessary
+            Arrays.fill(passwordBytes.array(), (byte) 0);
+        }
+        return mac.doFinal();
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Holds on to the callbacks until the (notional) transaction is {@link #complete() completed}.
+ */
+public class TransactionCompletionCallbacksForTesting extends TransactionCompletionCallbacks {
+
+    private final List<Runnable> callbacks = Lists.newArrayList();
+
+    @Override
+    public void afterCompletion(final Runnable callback) {
+        callbacks.add(callback);
+    }
+
+    public void complete() {
+        final List<Runnable> toRun = Lists.newArrayList(callbacks);
+        callbacks.clear();
+        for (final Runnable callback : toRun) {
+            callback.run();
+        }
+    }
+}
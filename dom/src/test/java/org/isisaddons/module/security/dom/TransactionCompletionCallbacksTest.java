@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom;
+
+import java.util.List;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TransactionCompletionCallbacksTest {
+
+    final List<String> calls = Lists.newArrayList();
+
+    Runnable callback(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                calls.add(name);
+            }
+        };
+    }
+
+    public static class AfterCompletion extends TransactionCompletionCallbacksTest {
+
+        @Test
+        public void runs_immediately_when_no_transaction() throws Exception {
+
+            new TransactionCompletionCallbacks().afterCompletion(callback("a"));
+
+            assertThat(calls, is((List<String>) Lists.newArrayList("a")));
+        }
+    }
+
+    public static class Callbacks extends TransactionCompletionCallbacksTest {
+
+        @Test
+        public void runs_each_callback_once_after_previous_synchronization() throws Exception {
+
+            final Synchronization previous = new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    calls.add("previous.before");
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    calls.add("previous.after");
+                }
+            };
+            final TransactionCompletionCallbacks.Callbacks callbacks = new TransactionCompletionCallbacks.Callbacks(previous);
+            final Runnable a = callback("a");
+            callbacks.add(a);
+            callbacks.add(callback("b"));
+            callbacks.add(a);
+
+            callbacks.beforeCompletion();
+            assertThat(calls, is((List<String>) Lists.newArrayList("previous.before")));
+
+            callbacks.afterCompletion(Status.STATUS_COMMITTED);
+            assertThat(calls, is((List<String>) Lists.newArrayList("previous.before", "previous.after", "a", "b")));
+        }
+    }
+}
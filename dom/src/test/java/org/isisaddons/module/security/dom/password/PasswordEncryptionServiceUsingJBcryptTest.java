@@ -16,8 +16,14 @@
  */
 package org.isisaddons.module.security.dom.password;
 
+import org.junit.Test;
 import org.mindrot.jbcrypt.BCrypt;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
 public class PasswordEncryptionServiceUsingJBcryptTest extends PasswordEncryptionServiceContractTest {
 
     @Override
@@ -32,4 +38,41 @@ protected PasswordEncryptionService newPasswordEncryptionServiceDifferentSalt()
         service.salt = BCrypt.gensalt(12); // a different salt
         return service;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void encrypt_withDifferentSaltEachTime() throws Exception {
+        final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
+
+        assertThat(service.encrypt(PASSWORD), is(not(service.encrypt(PASSWORD))));
+    }
+
+    @Test
+    public void needsRehash_whenEncryptedWithLowerCost() throws Exception {
+        final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
+        service.cost = 5;
+        final String encrypted = service.encrypt(PASSWORD);
+        assertThat(service.needsRehash(encrypted), is(false));
+
+        service.cost = 6;
+        assertThat(service.needsRehash(encrypted), is(true));
+        assertThat(service.matches(PASSWORD, encrypted), is(true));
+    }
+
+    @Test
+    public void needsRehash_notWhenEncryptedWithHigherCost() throws Exception {
+        final PasswordEncryptionServiceUsingJBcrypt service = new PasswordEncryptionServiceUsingJBcrypt();
+        service.cost = 5;
+        final String encrypted = service.encrypt(PASSWORD);
+
+        service.cost = 4;
+        assertThat(service.needsRehash(encrypted), is(false));
+        assertThat(service.matches(PASSWORD, encrypted), is(true));
+    }
+
+    @Test
+    public void costOf() throws Exception {
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.costOf(BCrypt.hashpw(PASSWORD, BCrypt.gensalt(5))), is(5));
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.costOf("not-bcrypt"), is(nullValue()));
+        assertThat(PasswordEncryptionServiceUsingJBcrypt.costOf(null), is(nullValue()));
+    }
+}
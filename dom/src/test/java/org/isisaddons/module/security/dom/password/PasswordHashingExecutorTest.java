@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.password;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PasswordHashingExecutorTest {
+
+    final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1);
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+    }
+
+    public static class Execute extends PasswordHashingExecutorTest {
+
+        @Test
+        public void happy_case() throws Exception {
+            final String result = executor.execute(new Callable<String>() {
+                @Override
+                public String call() {
+                    return Thread.currentThread().getName();
+                }
+            });
+
+            assertThat(result.startsWith("isis-module-security-password-hashing-"), is(true));
+            assertThat(executor.getSubmittedCount(), is(1L));
+            assertThat(executor.getCompletedCount(), is(1L));
+        }
+
+        @Test
+        public void rejects_when_queue_full() throws Exception {
+
+            // given the only thread is busy, and the queue (of one) is full
+            final CountDownLatch busy = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final Callable<Boolean> blocking = new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    busy.countDown();
+                    return release.await(10, TimeUnit.SECONDS);
+                }
+            };
+            final Thread first = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    executor.execute(blocking);
+                }
+            });
+            final Thread second = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    executor.execute(blocking);
+                }
+            });
+            first.start();
+            busy.await(10, TimeUnit.SECONDS);
+            second.start();
+            while(executor.getQueueDepth() == 0) {
+                Thread.sleep(10);
+            }
+
+            // when
+            try {
+                executor.execute(blocking);
+                fail();
+            } catch (PasswordHashingRejectedException ex) {
+                // then
+                assertThat(executor.getRejectedCount(), is(1L));
+            } finally {
+                release.countDown();
+                first.join();
+                second.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.permission;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationFeatureDictionaryTest {
+
+    final ApplicationFeatureDictionary dictionary = new ApplicationFeatureDictionary(ApplicationFeatureDictionary.MAXIMUM_SIZE);
+
+    public static class IdOf extends ApplicationFeatureDictionaryTest {
+
+        @Test
+        public void same_feature_same_id() throws Exception {
+            final int id1 = dictionary.idOf(ApplicationFeatureId.newMember("com.foo.Bar#bip"));
+            final int id2 = dictionary.idOf(ApplicationFeatureId.newMember("com.foo.Bar#bip"));
+
+            assertThat(id1, is(id2));
+            assertThat(dictionary.idOf(ApplicationFeatureId.newMember("com.foo.Bar#bop")), is(not(id1)));
+        }
+    }
+
+    public static class ParentOf extends ApplicationFeatureDictionaryTest {
+
+        @Test
+        public void walks_ancestors() throws Exception {
+            final int memberId = dictionary.idOf(ApplicationFeatureId.newMember("com.foo.Bar#bip"));
+
+            final int classId = dictionary.parentOf(memberId);
+            assertThat(classId, is(dictionary.idOf(ApplicationFeatureId.newClass("com.foo.Bar"))));
+
+            final int packageId = dictionary.parentOf(classId);
+            assertThat(packageId, is(dictionary.idOf(ApplicationFeatureId.newPackage("com.foo"))));
+
+            final int superPackageId = dictionary.parentOf(packageId);
+            assertThat(superPackageId, is(dictionary.idOf(ApplicationFeatureId.newPackage("com"))));
+
+            assertThat(dictionary.parentOf(superPackageId), is(ApplicationFeatureDictionary.NO_PARENT));
+        }
+    }
+
+    public static class PathIdsOf extends ApplicationFeatureDictionaryTest {
+
+        @Test
+        public void same_as_path_ids() throws Exception {
+            final ApplicationFeatureId memberId = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+
+            assertThat(Arrays.asList(dictionary.pathIdsOf(memberId)), is(memberId.getPathIds()));
+            assertThat(dictionary.pathIdsOf(memberId), is(sameInstance(dictionary.pathIdsOf(memberId))));
+        }
+    }
+
+    public static class IsFull extends ApplicationFeatureDictionaryTest {
+
+        @Test
+        public void once_maximum_size_is_reached() throws Exception {
+            final ApplicationFeatureDictionary dictionary = new ApplicationFeatureDictionary(4); // com, com.foo, com.foo.Bar and one member
+
+            dictionary.idOf(ApplicationFeatureId.newClass("com.foo.Bar"));
+            assertThat(dictionary.isFull(), is(false));
+
+            dictionary.idOf(ApplicationFeatureId.newMember("com.foo.Bar#bip"));
+            assertThat(dictionary.isFull(), is(true));
+
+            // still usable by those already holding it
+            final int id = dictionary.idOf(ApplicationFeatureId.newMember("com.foo.Bar#bop"));
+            assertThat(dictionary.parentOf(id), is(dictionary.idOf(ApplicationFeatureId.newClass("com.foo.Bar"))));
+        }
+    }
+
+    public static class Current extends ApplicationFeatureDictionaryTest {
+
+        @Test
+        public void same_until_full() throws Exception {
+            assertThat(ApplicationFeatureDictionary.current(), is(sameInstance(ApplicationFeatureDictionary.current())));
+        }
+    }
+}
@@ -1,5 +1,14 @@
 package org.isisaddons.module.security.dom.permission;
 
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assume;
 import org.junit.Test;
 
 import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
@@ -7,10 +16,248 @@
 import org.isisaddons.module.security.dom.SerializationContractTest;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class ApplicationPermissionValueSetTest {
 
+    public static class Evaluate {
+
+        final ApplicationFeatureId comPackage = ApplicationFeatureId.newPackage("com");
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+        final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+        final ApplicationFeatureId bopMember = ApplicationFeatureId.newMember("com.foo.Bar#bop");
+
+        final ApplicationPermissionValue allowChangingCom = new ApplicationPermissionValue(comPackage, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING);
+        final ApplicationPermissionValue allowChangingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING);
+        final ApplicationPermissionValue vetoChangingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING);
+
+        @Test
+        public void allow_beats_veto() throws Exception {
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingCom, allowChangingBar, vetoChangingBar), new PermissionsEvaluationServiceAllowBeatsVeto());
+
+            final ApplicationPermissionValueSet.Evaluation evaluation = set.evaluate(bipMember, ApplicationPermissionMode.CHANGING);
+            assertThat(evaluation.isGranted(), is(true));
+            assertThat(evaluation.getCause(), is(allowChangingBar));
+        }
+
+        @Test
+        public void veto_beats_allow() throws Exception {
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingCom, allowChangingBar, vetoChangingBar), new PermissionsEvaluationServiceVetoBeatsAllow());
+
+            final ApplicationPermissionValueSet.Evaluation evaluation = set.evaluate(bipMember, ApplicationPermissionMode.CHANGING);
+            assertThat(evaluation.isGranted(), is(false));
+            assertThat(evaluation.getCause(), is(vetoChangingBar));
+
+            assertThat(set.evaluate(bopMember, ApplicationPermissionMode.VIEWING).isGranted(), is(true));
+        }
+
+        @Test
+        public void no_permission_on_path() throws Exception {
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingBar), new PermissionsEvaluationServiceAllowBeatsVeto());
+
+            final ApplicationPermissionValueSet.Evaluation evaluation =
+                    set.evaluate(ApplicationFeatureId.newMember("com.foo.Baz#bip"), ApplicationPermissionMode.VIEWING);
+            assertThat(evaluation.isGranted(), is(false));
+            assertThat(evaluation.getCause(), is(nullValue()));
+        }
+
+        @Test
+        public void custom_evaluation_service_is_always_consulted() throws Exception {
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingBar), new PermissionsEvaluationServiceDenyAll());
+
+            assertThat(set.evaluate(bipMember, ApplicationPermissionMode.CHANGING).isGranted(), is(false));
+        }
+
+        static class PermissionsEvaluationServiceDenyAll implements PermissionsEvaluationService {
+            @Override
+            public ApplicationPermissionValueSet.Evaluation evaluate(
+                    final ApplicationFeatureId targetMemberId,
+                    final ApplicationPermissionMode mode,
+                    final Collection<ApplicationPermissionValue> permissionValues) {
+                return new ApplicationPermissionValueSet.Evaluation(null, false);
+            }
+        }
+    }
+
+    public static class EvaluateAll {
+
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+        final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+        final ApplicationFeatureId bopMember = ApplicationFeatureId.newMember("com.foo.Bar#bop");
+        final ApplicationFeatureId bazBipMember = ApplicationFeatureId.newMember("com.foo.Baz#bip");
+
+        final ApplicationPermissionValue allowChangingCom = new ApplicationPermissionValue(ApplicationFeatureId.newPackage("com"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING);
+        final ApplicationPermissionValue vetoChangingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING);
+
+        @Test
+        public void same_as_evaluating_each_in_turn() throws Exception {
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingCom, vetoChangingBar), new PermissionsEvaluationServiceVetoBeatsAllow());
+
+            final List<ApplicationFeatureId> featureIds = Arrays.asList(bipMember, bopMember, bazBipMember, barClass);
+            for (final ApplicationPermissionMode mode : ApplicationPermissionMode.values()) {
+                final Map<ApplicationFeatureId, ApplicationPermissionValueSet.Evaluation> evaluations = set.evaluateAll(featureIds, mode);
+                assertThat(evaluations.keySet(), is((Set<ApplicationFeatureId>) new LinkedHashSet<>(featureIds)));
+                for (final ApplicationFeatureId featureId : featureIds) {
+                    final ApplicationPermissionValueSet.Evaluation expected = set.evaluate(featureId, mode);
+                    assertThat(evaluations.get(featureId).isGranted(), is(expected.isGranted()));
+                    assertThat(evaluations.get(featureId).getCause(), is(expected.getCause()));
+                }
+            }
+        }
+    }
+
+    public static class PreOrdering {
+
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+        final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+
+        final ApplicationPermissionValue allowChangingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING);
+        final ApplicationPermissionValue vetoChangingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING);
+
+        @Test
+        public void orders_once_when_created() throws Exception {
+
+            final PermissionsEvaluationServiceCountingVetoBeatsAllow service = new PermissionsEvaluationServiceCountingVetoBeatsAllow();
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingBar, vetoChangingBar), service);
+            assertThat(service.preOrderedCount, is(1));
+
+            final ApplicationPermissionValueSet.Evaluation evaluation = set.evaluate(bipMember, ApplicationPermissionMode.CHANGING);
+            assertThat(evaluation.isGranted(), is(false));
+            assertThat(evaluation.getCause(), is(vetoChangingBar));
+            set.evaluate(barClass, ApplicationPermissionMode.VIEWING);
+
+            assertThat(service.preOrderedCount, is(1));
+        }
+
+        @Test
+        public void not_used_for_subclass_of_framework_provided_implementation() throws Exception {
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingBar), new PermissionsEvaluationServiceVetoBeatsAllow() {
+                        @Override
+                        public ApplicationPermissionValueSet.Evaluation evaluate(
+                                final ApplicationFeatureId targetMemberId,
+                                final ApplicationPermissionMode mode,
+                                final Collection<ApplicationPermissionValue> permissionValues) {
+                            return new ApplicationPermissionValueSet.Evaluation(null, false);
+                        }
+                    });
+
+            assertThat(set.evaluate(bipMember, ApplicationPermissionMode.CHANGING).isGranted(), is(false));
+            assertThat(set.grants(bipMember, ApplicationPermissionMode.VIEWING), is(false));
+        }
+
+        static class PermissionsEvaluationServiceCountingVetoBeatsAllow implements PermissionsEvaluationService.PreOrdering {
+            final PermissionsEvaluationServiceVetoBeatsAllow delegate = new PermissionsEvaluationServiceVetoBeatsAllow();
+            int preOrderedCount;
+
+            @Override
+            public ApplicationPermissionValueSet.Evaluation evaluate(
+                    final ApplicationFeatureId targetMemberId,
+                    final ApplicationPermissionMode mode,
+                    final Collection<ApplicationPermissionValue> permissionValues) {
+                return delegate.evaluate(targetMemberId, mode, permissionValues);
+            }
+
+            @Override
+            public List<ApplicationPermissionValue> preOrdered(final Collection<ApplicationPermissionValue> permissionValues) {
+                preOrderedCount++;
+                return delegate.preOrdered(permissionValues);
+            }
+
+            @Override
+            public ApplicationPermissionValueSet.Evaluation evaluatePreOrdered(
+                    final ApplicationFeatureId targetMemberId,
+                    final ApplicationPermissionMode mode,
+                    final List<ApplicationPermissionValue> preOrderedPermissionValues) {
+                return delegate.evaluatePreOrdered(targetMemberId, mode, preOrderedPermissionValues);
+            }
+        }
+    }
+
+    public static class Allocation {
+
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+        final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+        final ApplicationFeatureId bazBipMember = ApplicationFeatureId.newMember("com.foo.Baz#bip");
+
+        final ApplicationPermissionValue allowChangingCom = new ApplicationPermissionValue(ApplicationFeatureId.newPackage("com"), ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING);
+        final ApplicationPermissionValue vetoChangingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.VETO, ApplicationPermissionMode.CHANGING);
+
+        @Test
+        public void no_garbage_in_steady_state() throws Exception {
+
+            final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+            final com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            Assume.assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+            allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+            final ApplicationPermissionValueSet set = new ApplicationPermissionValueSet(
+                    Arrays.asList(allowChangingCom, vetoChangingBar), new PermissionsEvaluationServiceVetoBeatsAllow());
+            final ApplicationFeatureId[] targets = { bipMember, bazBipMember, ApplicationFeatureId.newMember("org.foo.Bar#bip") };
+
+            // warm up (interns the targets)
+            final int checks = 100000;
+            evaluate(set, targets, checks);
+
+            final long threadId = Thread.currentThread().getId();
+            final long before = allocationMXBean.getThreadAllocatedBytes(threadId);
+            evaluate(set, targets, checks);
+            final long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - before;
+
+            // allow for a little noise from the measurement itself, but nothing per check
+            assertThat("allocated " + allocated + " bytes", allocated < checks, is(true));
+        }
+
+        private static int evaluate(final ApplicationPermissionValueSet set, final ApplicationFeatureId[] targets, final int checks) {
+            int granted = 0;
+            for (int i = 0; i < checks; i++) {
+                final ApplicationFeatureId target = targets[i % targets.length];
+                final ApplicationPermissionMode mode = (i & 1) == 0 ? ApplicationPermissionMode.VIEWING : ApplicationPermissionMode.CHANGING;
+                if(set.evaluate(target, mode).isGranted()) {
+                    granted++;
+                }
+                if(set.grants(target, mode)) {
+                    granted++;
+                }
+            }
+            return granted;
+        }
+    }
+
+    public static class Union {
+
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+        final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+        final ApplicationPermissionValue apv1 = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.VIEWING);
+        final ApplicationPermissionValue apv2 = new ApplicationPermissionValue(bipMember, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.CHANGING);
+
+        @Test
+        public void combines_and_ignores_duplicates() throws Exception {
+
+            final ApplicationPermissionValueSet set1 = new ApplicationPermissionValueSet(apv1);
+            final ApplicationPermissionValueSet set2 = new ApplicationPermissionValueSet(apv1, apv2);
+
+            final ApplicationPermissionValueSet union = ApplicationPermissionValueSet.union(Arrays.asList(set1, set2), null);
+
+            assertThat(union, is(new ApplicationPermissionValueSet(apv1, apv2)));
+            assertThat(union.grants(bipMember, ApplicationPermissionMode.CHANGING), is(true));
+        }
+    }
+
     public static class Serialization extends SerializationContractTest {
 
         final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
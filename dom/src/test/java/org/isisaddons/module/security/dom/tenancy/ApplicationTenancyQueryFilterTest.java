@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.tenancy;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationTenancyQueryFilterTest {
+
+    public static class VisibleTo extends ApplicationTenancyQueryFilterTest {
+
+        @Test
+        public void user_without_tenancy() throws Exception {
+            final ApplicationTenancyQueryFilter filter = ApplicationTenancyQueryFilter.visibleTo(null);
+
+            assertThat(filter.getFilter(), is("atPath == null"));
+            assertThat(filter.getParameterDeclarations(), is(nullValue()));
+            assertThat(filter.getParameters().isEmpty(), is(true));
+        }
+
+        @Test
+        public void user_at_root() throws Exception {
+            final ApplicationTenancyQueryFilter filter = ApplicationTenancyQueryFilter.visibleTo("/");
+
+            assertThat(filter.getFilter(), is(nullValue()));
+            assertThat(filter.getParameters().isEmpty(), is(true));
+        }
+
+        @Test
+        public void user_below_root() throws Exception {
+            final ApplicationTenancyQueryFilter filter = ApplicationTenancyQueryFilter.visibleTo("/uk/london");
+
+            assertThat(filter.getFilter(), is(
+                    "(atPath == null || atPath == :tenancyPath || atPath.startsWith(:tenancyPathPrefix) || :tenancyPathAncestors.contains(atPath))"));
+            assertThat(filter.getParameterDeclarations(), is(
+                    "String tenancyPath, String tenancyPathPrefix, java.util.Collection tenancyPathAncestors"));
+            assertThat(filter.getParameters().get("tenancyPath"), is((Object) "/uk/london"));
+            assertThat(filter.getParameters().get("tenancyPathPrefix"), is((Object) "/uk/london/"));
+            assertThat(filter.getParameters().get("tenancyPathAncestors"), is((Object) Arrays.asList("/", "/uk")));
+        }
+
+        @Test
+        public void path_normalized() throws Exception {
+            final ApplicationTenancyQueryFilter filter = ApplicationTenancyQueryFilter.visibleTo("/uk/");
+
+            assertThat(filter.getParameters().get("tenancyPath"), is((Object) "/uk"));
+            assertThat(filter.getParameters().get("tenancyPathPrefix"), is((Object) "/uk/"));
+            assertThat(filter.getParameters().get("tenancyPathAncestors"), is((Object) Arrays.asList("/")));
+        }
+
+        @Test
+        public void custom_member() throws Exception {
+            final ApplicationTenancyQueryFilter filter = ApplicationTenancyQueryFilter.visibleTo(null, "tenancy");
+
+            assertThat(filter.getFilter(), is("tenancy == null"));
+        }
+    }
+
+    public static class None extends ApplicationTenancyQueryFilterTest {
+
+        @Test
+        public void happy_case() throws Exception {
+            final ApplicationTenancyQueryFilter filter = ApplicationTenancyQueryFilter.none("atPath");
+
+            assertThat(filter.getFilter(), is("(atPath == null && atPath != null)"));
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.dom.user;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.TransactionCompletionCallbacksForTesting;
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancy;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationUserTenancyCacheTest {
+
+    static class ApplicationUserRepositoryForTesting extends ApplicationUserRepository {
+        final Map<String, ApplicationUser> users = Maps.newHashMap();
+        int lookups;
+
+        void addUser(final String username, final String atPath) {
+            final ApplicationUser user = new ApplicationUser();
+            user.setUsername(username);
+            user.setAtPath(atPath);
+            user.setStatus(ApplicationUserStatus.ENABLED);
+            users.put(username, user);
+        }
+
+        @Override
+        public ApplicationUser findByUsername(final String username) {
+            lookups++;
+            return users.get(username);
+        }
+    }
+
+    ApplicationUserRepositoryForTesting applicationUserRepository;
+    TransactionCompletionCallbacksForTesting transactionCompletionCallbacks;
+    ApplicationUserTenancyCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        applicationUserRepository = new ApplicationUserRepositoryForTesting();
+        applicationUserRepository.addUser("fred", "/uk");
+        transactionCompletionCallbacks = new TransactionCompletionCallbacksForTesting();
+
+        cache = new ApplicationUserTenancyCache();
+        cache.applicationUserRepository = applicationUserRepository;
+        cache.transactionCompletionCallbacks = transactionCompletionCallbacks;
+    }
+
+    public static class TenancyFor extends ApplicationUserTenancyCacheTest {
+
+        @Test
+        public void looked_up_once() throws Exception {
+
+            assertThat(cache.tenancyFor("fred").getAtPath(), is("/uk"));
+            assertThat(cache.tenancyFor("fred").getAtPath(), is("/uk"));
+
+            assertThat(applicationUserRepository.lookups, is(1));
+        }
+
+        @Test
+        public void unknown_user_not_cached() throws Exception {
+
+            assertThat(cache.tenancyFor("mary"), is(nullValue()));
+            assertThat(cache.tenancyFor("mary"), is(nullValue()));
+
+            assertThat(applicationUserRepository.lookups, is(2));
+        }
+    }
+
+    public static class Invalidate extends ApplicationUserTenancyCacheTest {
+
+        @Test
+        public void looked_up_afresh() throws Exception {
+
+            cache.tenancyFor("fred");
+            applicationUserRepository.users.get("fred").setAtPath("/uk/london");
+
+            cache.invalidate("fred");
+
+            assertThat(cache.tenancyFor("fred").getAtPath(), is("/uk/london"));
+            assertThat(applicationUserRepository.lookups, is(2));
+        }
+
+        @Test
+        public void again_after_completion() throws Exception {
+
+            cache.tenancyFor("fred");
+            cache.invalidate("fred");
+
+            // a concurrent request re-caches the pre-commit state
+            cache.tenancyFor("fred");
+            applicationUserRepository.users.get("fred").setAtPath("/uk/london");
+
+            transactionCompletionCallbacks.complete();
+
+            assertThat(cache.tenancyFor("fred").getAtPath(), is("/uk/london"));
+        }
+    }
+
+    public static class InvalidateAll extends ApplicationUserTenancyCacheTest {
+
+        @Test
+        public void again_after_completion() throws Exception {
+
+            cache.tenancyFor("fred");
+            cache.invalidateAll();
+
+            cache.tenancyFor("fred");
+            applicationUserRepository.users.get("fred").setAtPath("/uk/london");
+
+            transactionCompletionCallbacks.complete();
+
+            assertThat(cache.tenancyFor("fred").getAtPath(), is("/uk/london"));
+            assertThat(applicationUserRepository.lookups, is(3));
+        }
+    }
+
+    public static class ChangeOfTenancy extends ApplicationUserTenancyCacheTest {
+
+        ApplicationUser fred;
+        ApplicationTenancy london;
+
+        @Before
+        public void setUpTenancy() throws Exception {
+            fred = applicationUserRepository.users.get("fred");
+            fred.applicationUserTenancyCache = cache;
+
+            london = new ApplicationTenancy();
+            london.setPath("/uk/london");
+
+            cache.tenancyFor("fred");
+        }
+
+        @Test
+        public void add_user() throws Exception {
+
+            london.addUser(fred);
+
+            assertThat(cache.tenancyFor("fred").getAtPath(), is("/uk/london"));
+        }
+
+        @Test
+        public void remove_user() throws Exception {
+
+            london.removeUser(fred);
+
+            assertThat(cache.tenancyFor("fred").getAtPath(), is(nullValue()));
+        }
+    }
+}
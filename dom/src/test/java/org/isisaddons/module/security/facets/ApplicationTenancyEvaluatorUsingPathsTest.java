@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.facets;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyPathEvaluator;
+import org.isisaddons.module.security.dom.tenancy.HasAtPath;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+import org.isisaddons.module.security.dom.user.ApplicationUserTenancy;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@SuppressWarnings("deprecation")
+public class ApplicationTenancyEvaluatorUsingPathsTest {
+
+    static class Tenanted implements HasAtPath {
+        private final String atPath;
+
+        Tenanted(final String atPath) {
+            this.atPath = atPath;
+        }
+
+        @Override
+        public String getAtPath() {
+            return atPath;
+        }
+    }
+
+    final ApplicationTenancyEvaluatorUsingPaths evaluator =
+            new ApplicationTenancyEvaluatorUsingPaths(new TenantedAuthorizationFacetFactory.ApplicationTenancyPathEvaluatorDefault()) {
+                @Override
+                protected String applicationTenancyPathForCached(final Object domainObject) {
+                    // no QueryResultsCache outside of a request
+                    return applicationTenancyPathFor(domainObject);
+                }
+            };
+
+    final List<Tenanted> objects = Arrays.asList(
+            new Tenanted(null),
+            new Tenanted("/"),
+            new Tenanted("/it"),
+            new Tenanted("/it/car"),
+            new Tenanted("/it/igl"),
+            new Tenanted("/fr"),
+            new Tenanted("/itx"));
+
+    static ApplicationUserTenancy userAt(final String atPath) {
+        return new ApplicationUserTenancy("fred", atPath, ApplicationUserStatus.ENABLED);
+    }
+
+    BitSet hidden(final ApplicationUserTenancy userTenancy) {
+        final BitSet hidden = new BitSet();
+        for (int i = 0; i < objects.size(); i++) {
+            if (evaluator.hides(objects.get(i), userTenancy) != null) {
+                hidden.set(i);
+            }
+        }
+        return hidden;
+    }
+
+    BitSet disabled(final ApplicationUserTenancy userTenancy) {
+        final BitSet disabled = new BitSet();
+        for (int i = 0; i < objects.size(); i++) {
+            if (evaluator.disables(objects.get(i), userTenancy) != null) {
+                disabled.set(i);
+            }
+        }
+        return disabled;
+    }
+
+    static BitSet bits(final int... indices) {
+        final BitSet bits = new BitSet();
+        for (final int index : indices) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    public static class HandlesUserTenancy extends ApplicationTenancyEvaluatorUsingPathsTest {
+
+        @Test
+        public void default_path_evaluator() throws Exception {
+            // even though ApplicationUser implements HasAtPath, the default path evaluator simply returns its atPath
+            assertThat(evaluator.handlesUserTenancy(), is(true));
+        }
+
+        @Test
+        public void path_evaluator_handling_application_user() throws Exception {
+            final ApplicationTenancyEvaluatorUsingPaths evaluator = new ApplicationTenancyEvaluatorUsingPaths(
+                    new ApplicationTenancyPathEvaluator() {
+                        @Override
+                        public boolean handles(final Class<?> cls) {
+                            return true;
+                        }
+
+                        @Override
+                        public String applicationTenancyPathFor(final Object domainObject) {
+                            return "/";
+                        }
+                    });
+
+            assertThat(evaluator.handlesUserTenancy(), is(false));
+        }
+    }
+
+    public static class Hides extends ApplicationTenancyEvaluatorUsingPathsTest {
+
+        @Test
+        public void user_at_root() throws Exception {
+            assertThat(hidden(userAt("/")), is(bits()));
+        }
+
+        @Test
+        public void user_at_country() throws Exception {
+            assertThat(hidden(userAt("/it")), is(bits(5, 6)));
+        }
+
+        @Test
+        public void user_at_region() throws Exception {
+            assertThat(hidden(userAt("/it/car")), is(bits(4, 5, 6)));
+        }
+
+        @Test
+        public void user_without_tenancy() throws Exception {
+            assertThat(hidden(userAt(null)), is(bits(1, 2, 3, 4, 5, 6)));
+        }
+    }
+
+    public static class Disables extends ApplicationTenancyEvaluatorUsingPathsTest {
+
+        @Test
+        public void user_at_root() throws Exception {
+            assertThat(disabled(userAt("/")), is(bits()));
+        }
+
+        @Test
+        public void user_at_country() throws Exception {
+            assertThat(disabled(userAt("/it")), is(bits(1, 5, 6)));
+        }
+
+        @Test
+        public void user_at_region() throws Exception {
+            assertThat(disabled(userAt("/it/car")), is(bits(1, 2, 4, 5, 6)));
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.facets;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationTenancyPathTrieTest {
+
+    final ApplicationTenancyPathTrie trie = new ApplicationTenancyPathTrie();
+
+    ApplicationTenancyPathTrie.Node node(final String path) {
+        return trie.nodeFor(path);
+    }
+
+    public static class NodeFor extends ApplicationTenancyPathTrieTest {
+
+        @Test
+        public void same_path_same_node() throws Exception {
+            assertThat(node("/it/car"), is(sameInstance(node("/it/car"))));
+        }
+
+        @Test
+        public void empty_segments_ignored() throws Exception {
+            assertThat(node("/it/car/"), is(sameInstance(node("/it/car"))));
+            assertThat(node("//it//car"), is(sameInstance(node("/it/car"))));
+            assertThat(node(""), is(sameInstance(node("/"))));
+        }
+
+        @Test
+        public void cached_once_per_normalised_path() throws Exception {
+            node("/uk");
+            node("/uk/");
+            node("//uk");
+            assertThat(trie.cachedPathCount(), is(1L));
+
+            node("/uk/london");
+            assertThat(trie.cachedPathCount(), is(2L));
+        }
+
+        @Test
+        public void depth() throws Exception {
+            assertThat(node("/").getDepth(), is(0));
+            assertThat(node("/it").getDepth(), is(1));
+            assertThat(node("/it/car").getDepth(), is(2));
+        }
+
+        @Test
+        public void to_string() throws Exception {
+            assertThat(node("/").toString(), is("/"));
+            assertThat(node("/it/car/").toString(), is("/it/car"));
+        }
+    }
+
+    public static class Normalise extends ApplicationTenancyPathTrieTest {
+
+        @Test
+        public void already_normalised() throws Exception {
+            final String path = "/uk/london";
+            assertThat(ApplicationTenancyPathTrie.normalise(path), is(sameInstance(path)));
+            assertThat(ApplicationTenancyPathTrie.normalise("/"), is("/"));
+        }
+
+        @Test
+        public void not_normalised() throws Exception {
+            assertThat(ApplicationTenancyPathTrie.normalise("/uk/"), is("/uk"));
+            assertThat(ApplicationTenancyPathTrie.normalise("//uk//london"), is("/uk/london"));
+            assertThat(ApplicationTenancyPathTrie.normalise("uk"), is("/uk"));
+            assertThat(ApplicationTenancyPathTrie.normalise(""), is("/"));
+            assertThat(ApplicationTenancyPathTrie.normalise("//"), is("/"));
+        }
+    }
+
+    public static class IsSameOrDescendantOf extends ApplicationTenancyPathTrieTest {
+
+        @Test
+        public void same() throws Exception {
+            assertThat(node("/it").isSameOrDescendantOf(node("/it")), is(true));
+        }
+
+        @Test
+        public void descendant() throws Exception {
+            assertThat(node("/it/car").isSameOrDescendantOf(node("/it")), is(true));
+            assertThat(node("/it/car").isSameOrDescendantOf(node("/")), is(true));
+        }
+
+        @Test
+        public void ancestor() throws Exception {
+            assertThat(node("/it").isSameOrDescendantOf(node("/it/car")), is(false));
+        }
+
+        @Test
+        public void sibling() throws Exception {
+            assertThat(node("/it/car").isSameOrDescendantOf(node("/it/igl")), is(false));
+        }
+
+        @Test
+        public void common_prefix_but_not_segment() throws Exception {
+            assertThat(node("/ukraine").isSameOrDescendantOf(node("/uk")), is(false));
+            assertThat(node("/ukraine/kyiv").isSameOrDescendantOf(node("/uk")), is(false));
+        }
+    }
+
+    public static class IsInSameHierarchyAs extends ApplicationTenancyPathTrieTest {
+
+        @Test
+        public void ancestor_and_descendant() throws Exception {
+            assertThat(node("/it").isInSameHierarchyAs(node("/it/car")), is(true));
+            assertThat(node("/it/car").isInSameHierarchyAs(node("/it")), is(true));
+            assertThat(node("/").isInSameHierarchyAs(node("/fr")), is(true));
+        }
+
+        @Test
+        public void different_branches() throws Exception {
+            assertThat(node("/it/car").isInSameHierarchyAs(node("/it/igl")), is(false));
+            assertThat(node("/it").isInSameHierarchyAs(node("/fr")), is(false));
+        }
+
+        @Test
+        public void common_prefix_but_not_segment() throws Exception {
+            assertThat(node("/uk").isInSameHierarchyAs(node("/ukraine")), is(false));
+            assertThat(node("/ukraine").isInSameHierarchyAs(node("/uk")), is(false));
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.facets;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.isis.core.metamodel.facetapi.FacetHolder;
+import org.apache.isis.core.metamodel.facetapi.FacetHolderImpl;
+
+import org.isisaddons.module.security.dom.tenancy.ApplicationTenancyEvaluator;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TenantedAuthorizationFacetFactoryTest {
+
+    static class Tenanted {
+    }
+
+    static class NotTenanted {
+    }
+
+    static class ApplicationTenancyEvaluatorCounting implements ApplicationTenancyEvaluator {
+        int handlesCount;
+
+        @Override
+        public boolean handles(final Class<?> cls) {
+            handlesCount++;
+            return cls == Tenanted.class;
+        }
+
+        @Override
+        public String hides(final Object domainObject, final ApplicationUser applicationUser) {
+            return null;
+        }
+
+        @Override
+        public String disables(final Object domainObject, final ApplicationUser applicationUser) {
+            return null;
+        }
+    }
+
+    final ApplicationTenancyEvaluatorCounting evaluator = new ApplicationTenancyEvaluatorCounting();
+
+    int serviceLookups;
+
+    final TenantedAuthorizationFacetFactory facetFactory = new TenantedAuthorizationFacetFactory() {
+        @Override
+        List<ApplicationTenancyEvaluator> lookupEvaluators() {
+            return Arrays.<ApplicationTenancyEvaluator>asList(evaluator);
+        }
+
+        @Override
+        <T> T lookupService(final Class<T> serviceClass) {
+            serviceLookups++;
+            return null;
+        }
+    };
+
+    static TenantedAuthorizationFacetDefault facetOf(final FacetHolder holder) {
+        return (TenantedAuthorizationFacetDefault) holder.getFacet(TenantedAuthorizationFacet.class);
+    }
+
+    public static class AddFacet extends TenantedAuthorizationFacetFactoryTest {
+
+        @Test
+        public void facet_per_holder() throws Exception {
+            final FacetHolder classHolder = new FacetHolderImpl();
+            final FacetHolder memberHolder = new FacetHolderImpl();
+
+            facetFactory.addFacet(Tenanted.class, classHolder);
+            facetFactory.addFacet(Tenanted.class, memberHolder);
+
+            final TenantedAuthorizationFacetDefault classFacet = facetOf(classHolder);
+            final TenantedAuthorizationFacetDefault memberFacet = facetOf(memberHolder);
+            assertThat(classFacet.getFacetHolder(), is(sameInstance(classHolder)));
+            assertThat(memberFacet.getFacetHolder(), is(sameInstance(memberHolder)));
+            assertThat(memberFacet, is(not(sameInstance(classFacet))));
+        }
+
+        @Test
+        public void evaluators_and_services_resolved_once_and_shared() throws Exception {
+            final FacetHolder classHolder = new FacetHolderImpl();
+            final FacetHolder memberHolder = new FacetHolderImpl();
+            final FacetHolder parameterHolder = new FacetHolderImpl();
+
+            facetFactory.addFacet(Tenanted.class, classHolder);
+            facetFactory.addFacet(Tenanted.class, memberHolder);
+            facetFactory.addFacet(Tenanted.class, parameterHolder);
+
+            assertThat(evaluator.handlesCount, is(1));
+            assertThat(serviceLookups, is(5));
+            assertThat(facetOf(memberHolder).getEvaluators(), is(sameInstance(facetOf(classHolder).getEvaluators())));
+            assertThat(facetOf(parameterHolder).getEvaluators(), is(sameInstance(facetOf(classHolder).getEvaluators())));
+        }
+
+        @Test
+        public void class_not_handled() throws Exception {
+            final FacetHolder classHolder = new FacetHolderImpl();
+            final FacetHolder memberHolder = new FacetHolderImpl();
+
+            facetFactory.addFacet(NotTenanted.class, classHolder);
+            facetFactory.addFacet(NotTenanted.class, memberHolder);
+
+            assertThat(facetOf(classHolder), is(nullValue()));
+            assertThat(facetOf(memberHolder), is(nullValue()));
+            assertThat(evaluator.handlesCount, is(1));
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturn;
+
+import org.isisaddons.module.security.dom.password.PasswordEncryptionService;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+import org.isisaddons.module.security.dom.user.ApplicationUserRepository;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+
+/**
+ * Runs the realm against in-memory users, with each {@link #execute(TransactionalClosureWithReturn) closure} run in a
+ * notional transaction (joining any that is already in progress on the calling thread, as per Isis).
+ */
+class IsisModuleSecurityRealmForTesting extends IsisModuleSecurityRealm {
+
+    static class Transaction {
+        boolean rollbackOnly;
+    }
+
+    private final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+
+    final AtomicInteger transactionCount = new AtomicInteger();
+
+    final ApplicationUserRepositoryForTesting applicationUserRepository = new ApplicationUserRepositoryForTesting();
+
+    PasswordEncryptionService passwordEncryptionService;
+
+    Transaction currentTransaction() {
+        return currentTransaction.get();
+    }
+
+    @Override
+    <V> V execute(final TransactionalClosureWithReturn<V> closure) {
+        inject(closure);
+        final Transaction outer = currentTransaction.get();
+        if (outer != null) {
+            try {
+                return closure.execute();
+            } catch (RuntimeException ex) {
+                outer.rollbackOnly = true;
+                throw ex;
+            }
+        }
+        final Transaction transaction = new Transaction();
+        currentTransaction.set(transaction);
+        transactionCount.incrementAndGet();
+        try {
+            final V result = closure.execute();
+            if (transaction.rollbackOnly) {
+                throw new IllegalStateException("Transaction is marked for rollback only");
+            }
+            return result;
+        } finally {
+            currentTransaction.remove();
+        }
+    }
+
+    @Override
+    boolean isInSession() {
+        return currentTransaction.get() != null;
+    }
+
+    private void inject(final Object closure) {
+        final List<Object> services = Lists.<Object>newArrayList(applicationUserRepository);
+        if (passwordEncryptionService != null) {
+            services.add(passwordEncryptionService);
+        }
+        for (final Field field : closure.getClass().getDeclaredFields()) {
+            if (!field.isAnnotationPresent(Inject.class)) {
+                continue;
+            }
+            for (final Object service : services) {
+                if (field.getType().isInstance(service)) {
+                    field.setAccessible(true);
+                    try {
+                        field.set(closure, service);
+                    } catch (IllegalAccessException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            }
+        }
+    }
+
+    static class ApplicationUserForTesting extends ApplicationUser {
+        @Override
+        public ApplicationPermissionValueSet getPermissionSet() {
+            return new ApplicationPermissionValueSet(Collections.<ApplicationPermissionValue>emptyList());
+        }
+    }
+
+    static class ApplicationUserRepositoryForTesting extends ApplicationUserRepository {
+
+        final ConcurrentMap<String, ApplicationUser> users = Maps.newConcurrentMap();
+
+        ApplicationUser addUser(final String username, final AccountType accountType, final String encryptedPassword) {
+            final ApplicationUser user = new ApplicationUserForTesting();
+            user.setUsername(username);
+            user.setAccountType(accountType);
+            user.setStatus(ApplicationUserStatus.ENABLED);
+            user.setEncryptedPassword(encryptedPassword);
+            users.put(username, user);
+            return user;
+        }
+
+        @Override
+        public ApplicationUser findByUsername(final String username) {
+            return users.get(username);
+        }
+
+        final AtomicInteger createCount = new AtomicInteger();
+
+        /**
+         * If set, then the next creation fails as if the user had just been created concurrently elsewhere (eg by
+         * another node of a cluster).
+         */
+        boolean failNextCreateAsDuplicate;
+
+        /**
+         * Auto-created delegated users are enabled, for simplicity.
+         */
+        @Override
+        public ApplicationUser findOrCreateUserByUsername(final String username) {
+            final ApplicationUser user = findByUsername(username);
+            if (user != null) {
+                return user;
+            }
+            createCount.incrementAndGet();
+            final ApplicationUser newUser = addUser(username, AccountType.DELEGATED, null);
+            if (failNextCreateAsDuplicate) {
+                failNextCreateAsDuplicate = false;
+                throw new IllegalStateException("duplicate key value violates unique constraint");
+            }
+            return newUser;
+        }
+    }
+}
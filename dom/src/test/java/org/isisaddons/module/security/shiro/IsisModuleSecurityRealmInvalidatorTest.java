@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.TransactionCompletionCallbacksForTesting;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IsisModuleSecurityRealmInvalidatorTest {
+
+    static class IsisModuleSecurityRealmRecording extends IsisModuleSecurityRealm {
+        final List<String> calls = Lists.newArrayList();
+
+        @Override
+        public void invalidateAuthorizationInfoForRole(final String roleName) {
+            calls.add("authorizationInfoForRole:" + roleName);
+        }
+
+        @Override
+        public void invalidateCredentialsForRole(final String roleName) {
+            calls.add("credentialsForRole:" + roleName);
+        }
+
+        @Override
+        public void invalidateCredentials(final String username) {
+            calls.add("credentials:" + username);
+        }
+    }
+
+    IsisModuleSecurityRealmRecording realm;
+    TransactionCompletionCallbacksForTesting transactionCompletionCallbacks;
+    IsisModuleSecurityRealmInvalidator invalidator;
+
+    @Before
+    public void setUp() throws Exception {
+        realm = new IsisModuleSecurityRealmRecording();
+        SecurityUtils.setSecurityManager(new DefaultSecurityManager(realm));
+
+        transactionCompletionCallbacks = new TransactionCompletionCallbacksForTesting();
+        invalidator = new IsisModuleSecurityRealmInvalidator();
+        invalidator.transactionCompletionCallbacks = transactionCompletionCallbacks;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SecurityUtils.setSecurityManager(null);
+    }
+
+    public static class InvalidateCredentials extends IsisModuleSecurityRealmInvalidatorTest {
+
+        @Test
+        public void immediately_and_again_after_completion() throws Exception {
+
+            invalidator.invalidateCredentials("fred");
+            assertThat(realm.calls, is((List<String>) Lists.newArrayList("credentials:fred")));
+
+            transactionCompletionCallbacks.complete();
+            assertThat(realm.calls, is((List<String>) Lists.newArrayList("credentials:fred", "credentials:fred")));
+        }
+    }
+
+    public static class InvalidateAuthorizationInfoForRole extends IsisModuleSecurityRealmInvalidatorTest {
+
+        @Test
+        public void immediately_and_again_after_completion() throws Exception {
+
+            invalidator.invalidateAuthorizationInfoForRole("admin");
+            assertThat(realm.calls, is((List<String>) Lists.newArrayList(
+                    "authorizationInfoForRole:admin", "credentialsForRole:admin")));
+
+            transactionCompletionCallbacks.complete();
+            assertThat(realm.calls, is((List<String>) Lists.newArrayList(
+                    "authorizationInfoForRole:admin", "credentialsForRole:admin",
+                    "authorizationInfoForRole:admin", "credentialsForRole:admin")));
+        }
+
+        @Test
+        public void when_no_realm() throws Exception {
+
+            SecurityUtils.setSecurityManager(null);
+
+            invalidator.invalidateAuthorizationInfoForRole("admin");
+            transactionCompletionCallbacks.complete();
+
+            assertThat(realm.calls.isEmpty(), is(true));
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import com.google.common.collect.Lists;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.CredentialsException;
+import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.realm.SimpleAccountRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+import org.apache.isis.core.runtime.system.transaction.TransactionalClosureWithReturnAbstract;
+
+import org.isisaddons.module.security.dom.password.PasswordEncryptionService;
+import org.isisaddons.module.security.dom.password.PasswordHashingRejectedException;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUser;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class IsisModuleSecurityRealmTest {
+
+    public static class IsPermitted extends IsisModuleSecurityRealmTest {
+
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+
+        IsisModuleSecurityRealm realm;
+        PrincipalCollection principals;
+        PrincipalForApplicationUserTest.PermissionsEvaluationServiceCounting service;
+
+        @Before
+        public void setUp() throws Exception {
+            realm = new IsisModuleSecurityRealm();
+            service = new PrincipalForApplicationUserTest.PermissionsEvaluationServiceCounting();
+            final ApplicationPermissionValueSet permissionSet = new ApplicationPermissionValueSet(
+                    Arrays.asList(new ApplicationPermissionValue(barClass, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.VIEWING)),
+                    service);
+            principals = new SimplePrincipalCollection(
+                    PrincipalForApplicationUserTest.principal("fred", permissionSet, 10), realm.getName());
+        }
+
+        @Test
+        public void direct_evaluation_same_as_via_permission_resolver() throws Exception {
+
+            final String[] permissions = { "com.foo:Bar:bip:r", "com.foo:Bar:bip:r:", "com.foo:Baz:bip:r" };
+
+            final boolean[] expected = new boolean[permissions.length];
+            for (int i = 0; i < permissions.length; i++) {
+                expected[i] = realm.isPermitted(principals, permissions[i]);
+            }
+
+            realm.setDirectPermissionEvaluation(true);
+            for (int i = 0; i < permissions.length; i++) {
+                assertThat(permissions[i], realm.isPermitted(principals, permissions[i]), is(expected[i]));
+            }
+            assertThat(expected[0], is(true));
+            assertThat(expected[2], is(false));
+        }
+
+        @Test
+        public void direct_evaluation_is_memoized() throws Exception {
+
+            realm.setDirectPermissionEvaluation(true);
+
+            assertThat(realm.isPermitted(principals, "com.foo:Bar:bip:r"), is(true));
+            assertThat(realm.isPermitted(principals, "com.foo:Bar:bip:r"), is(true));
+
+            assertThat(service.count, is(1));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void direct_evaluation_rejects_invalid_permission() throws Exception {
+
+            realm.setDirectPermissionEvaluation(true);
+
+            realm.isPermitted(principals, "com.foo:Bar:r");
+        }
+    }
+
+    public static class CheckPassword extends IsisModuleSecurityRealmTest {
+
+        /**
+         * Hashes are of the form "cost:password", requiring a rehash if the cost is below 2; records whether any
+         * (deliberately slow) hashing is performed while a transaction is in progress.
+         */
+        static class PasswordEncryptionServiceForTesting implements PasswordEncryptionService.Rehashing {
+            final IsisModuleSecurityRealmForTesting realm;
+            boolean hashedWithinTransaction;
+
+            PasswordEncryptionServiceForTesting(final IsisModuleSecurityRealmForTesting realm) {
+                this.realm = realm;
+            }
+
+            @Override
+            public String encrypt(final String password) {
+                hashedWithinTransaction |= realm.currentTransaction() != null;
+                return "2:" + password;
+            }
+
+            @Override
+            public boolean matches(final String candidate, final String encrypted) {
+                hashedWithinTransaction |= realm.currentTransaction() != null;
+                return encrypted != null && encrypted.substring(encrypted.indexOf(':') + 1).equals(candidate);
+            }
+
+            @Override
+            public boolean needsRehash(final String encrypted) {
+                return Integer.parseInt(encrypted.substring(0, encrypted.indexOf(':'))) < 2;
+            }
+        }
+
+        IsisModuleSecurityRealmForTesting realm;
+        PasswordEncryptionServiceForTesting passwordEncryptionService;
+
+        @Before
+        public void setUp() throws Exception {
+            realm = new IsisModuleSecurityRealmForTesting();
+            passwordEncryptionService = new PasswordEncryptionServiceForTesting(realm);
+            realm.passwordEncryptionService = passwordEncryptionService;
+        }
+
+        @Test
+        public void outside_of_transaction() throws Exception {
+
+            realm.applicationUserRepository.addUser("fred", AccountType.LOCAL, "2:pass");
+
+            final AuthenticationInfo info = realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+
+            assertThat(info.getPrincipals().getPrimaryPrincipal().toString(), is("fred"));
+            assertThat(passwordEncryptionService.hashedWithinTransaction, is(false));
+            assertThat(realm.transactionCount.get(), is(1));
+        }
+
+        @Test(expected = CredentialsException.class)
+        public void bad_password() throws Exception {
+
+            realm.applicationUserRepository.addUser("fred", AccountType.LOCAL, "2:pass");
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "wrong"));
+        }
+
+        @Test
+        public void rehashed_in_own_transaction() throws Exception {
+
+            final ApplicationUser user = realm.applicationUserRepository.addUser("fred", AccountType.LOCAL, "1:pass");
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+
+            assertThat(user.getEncryptedPassword(), is("2:pass"));
+            assertThat(passwordEncryptionService.hashedWithinTransaction, is(false));
+            assertThat(realm.transactionCount.get(), is(2));
+        }
+
+        @Test
+        public void not_rehashed_if_password_changed_meanwhile() throws Exception {
+
+            final ApplicationUser user = realm.applicationUserRepository.addUser("fred", AccountType.LOCAL, "1:pass");
+            realm.passwordEncryptionService = new PasswordEncryptionServiceForTesting(realm) {
+                @Override
+                public String encrypt(final String password) {
+                    // a concurrent change of password, committed while the rehash is computed
+                    user.setEncryptedPassword("2:changed");
+                    return super.encrypt(password);
+                }
+            };
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+
+            assertThat(user.getEncryptedPassword(), is("2:changed"));
+        }
+    }
+
+    public static class Metrics extends IsisModuleSecurityRealmTest {
+
+        IsisModuleSecurityRealmForTesting realm;
+
+        @Before
+        public void setUp() throws Exception {
+            realm = new IsisModuleSecurityRealmForTesting();
+        }
+
+        @After
+        public void tearDown() throws Exception {
+            realm.destroy();
+        }
+
+        long loginOutcomeCount(final IsisModuleSecurityRealmMetrics.LoginOutcome outcome) {
+            return realm.getMetrics().snapshot().getLoginOutcomeCount(outcome);
+        }
+
+        @Test
+        public void password_hashing_rejected() throws Exception {
+
+            realm.applicationUserRepository.addUser("fred", AccountType.LOCAL, "2:pass");
+            realm.passwordEncryptionService = new CheckPassword.PasswordEncryptionServiceForTesting(realm) {
+                @Override
+                public boolean matches(final String candidate, final String encrypted) {
+                    throw new PasswordHashingRejectedException("Too many concurrent authentication requests");
+                }
+            };
+
+            try {
+                realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+                fail();
+            } catch (PasswordHashingRejectedException ex) {
+                // expected
+            }
+
+            assertThat(loginOutcomeCount(IsisModuleSecurityRealmMetrics.LoginOutcome.REJECTED), is(1L));
+        }
+
+        @Test
+        public void lookup_failed() throws Exception {
+
+            final ApplicationUser user = new ApplicationUser() {
+                @Override
+                public ApplicationPermissionValueSet getPermissionSet() {
+                    throw new IllegalStateException("database unavailable");
+                }
+            };
+            user.setUsername("fred");
+            realm.applicationUserRepository.users.put("fred", user);
+
+            try {
+                realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+                fail();
+            } catch (IllegalStateException ex) {
+                // expected
+            }
+
+            assertThat(loginOutcomeCount(IsisModuleSecurityRealmMetrics.LoginOutcome.ERROR), is(1L));
+        }
+
+        @Test
+        public void mbean_unregistered_when_destroyed() throws Exception {
+
+            final ObjectName objectName = new ObjectName("org.isisaddons.module.security:type=IsisModuleSecurityRealmTest");
+            realm.setMetricsObjectName(objectName.toString());
+            assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName), is(true));
+
+            realm.destroy();
+
+            assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName), is(false));
+        }
+    }
+
+    public static class AutoCreateDelegateUser extends IsisModuleSecurityRealmTest {
+
+        IsisModuleSecurityRealmForTesting realm;
+
+        @Before
+        public void setUp() throws Exception {
+            realm = new IsisModuleSecurityRealmForTesting();
+            final SimpleAccountRealm delegateRealm = new SimpleAccountRealm();
+            delegateRealm.addAccount("fred", "pass");
+            realm.setDelegateAuthenticationRealm(delegateRealm);
+        }
+
+        @Test
+        public void on_first_login() throws Exception {
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+
+            final ApplicationUser user = realm.applicationUserRepository.findByUsername("fred");
+            assertThat(user.getAccountType(), is(AccountType.DELEGATED));
+        }
+
+        @Test
+        public void once_for_concurrent_first_logins() throws Exception {
+
+            final int logins = 8;
+            final ExecutorService executor = Executors.newFixedThreadPool(logins);
+            try {
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<AuthenticationInfo>> futures = Lists.newArrayList();
+                for (int i = 0; i < logins; i++) {
+                    futures.add(executor.submit(new Callable<AuthenticationInfo>() {
+                        @Override
+                        public AuthenticationInfo call() throws Exception {
+                            start.await();
+                            return realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+                        }
+                    }));
+                }
+                start.countDown();
+                for (final Future<AuthenticationInfo> future : futures) {
+                    assertThat(future.get(10, TimeUnit.SECONDS).getPrincipals().getPrimaryPrincipal().toString(), is("fred"));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertThat(realm.applicationUserRepository.createCount.get(), is(1));
+        }
+
+        @Test
+        public void when_created_concurrently_elsewhere_within_existing_session() throws Exception {
+
+            realm.applicationUserRepository.failNextCreateAsDuplicate = true;
+
+            // login within an existing session, whose transaction would then be rolled back had the insert joined it
+            final AuthenticationInfo info = realm.execute(new TransactionalClosureWithReturnAbstract<AuthenticationInfo>() {
+                @Override
+                public AuthenticationInfo execute() {
+                    return realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+                }
+            });
+
+            assertThat(info.getPrincipals().getPrimaryPrincipal().toString(), is("fred"));
+            assertThat(realm.applicationUserRepository.createCount.get(), is(1));
+        }
+
+        @Test
+        public void within_existing_session_refused_once_destroyed() throws Exception {
+
+            realm.destroy();
+
+            try {
+                realm.execute(new TransactionalClosureWithReturnAbstract<AuthenticationInfo>() {
+                    @Override
+                    public AuthenticationInfo execute() {
+                        return realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+                    }
+                });
+                fail();
+            } catch (AuthenticationException ex) {
+                // expected
+            }
+
+            assertThat(realm.applicationUserRepository.createCount.get(), is(0));
+        }
+    }
+
+    public static class DelegateAuthenticationThreads extends IsisModuleSecurityRealmTest {
+
+        static class DelegateRealmRecording extends SimpleAccountRealm {
+            final List<String> threadNames = Collections.synchronizedList(Lists.<String>newArrayList());
+
+            @Override
+            protected AuthenticationInfo doGetAuthenticationInfo(final AuthenticationToken token) throws AuthenticationException {
+                threadNames.add(Thread.currentThread().getName());
+                return super.doGetAuthenticationInfo(token);
+            }
+        }
+
+        IsisModuleSecurityRealmForTesting realm;
+        DelegateRealmRecording delegateRealm;
+
+        @Before
+        public void setUp() throws Exception {
+            realm = new IsisModuleSecurityRealmForTesting();
+            realm.passwordEncryptionService = new CheckPassword.PasswordEncryptionServiceForTesting(realm);
+            delegateRealm = new DelegateRealmRecording();
+            delegateRealm.addAccount("fred", "pass");
+            realm.setDelegateAuthenticationRealm(delegateRealm);
+            realm.setDelegateAuthenticationThreads(2);
+
+            realm.applicationUserRepository.addUser("fred", AccountType.DELEGATED, null);
+            realm.applicationUserRepository.addUser("mary", AccountType.LOCAL, "2:pass");
+        }
+
+        @After
+        public void tearDown() throws Exception {
+            realm.destroy();
+        }
+
+        @Test
+        public void local_credentials_never_sent_to_delegate() throws Exception {
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("mary", "pass"));
+            realm.getAuthenticationInfo(new UsernamePasswordToken("mary", "pass"));
+
+            assertThat(delegateRealm.threadNames.isEmpty(), is(true));
+        }
+
+        @Test
+        public void concurrent_only_once_known_to_be_delegated() throws Exception {
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+            assertThat(delegateRealm.threadNames.get(0), is(Thread.currentThread().getName()));
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+            assertThat(delegateRealm.threadNames.get(1).startsWith("isis-module-security-delegate-authentication-"), is(true));
+        }
+
+        @Test
+        public void not_concurrent_once_invalidated() throws Exception {
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+            realm.invalidateCredentials("fred");
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+            assertThat(delegateRealm.threadNames.get(1), is(Thread.currentThread().getName()));
+        }
+
+        @Test
+        public void not_concurrent_once_destroyed() throws Exception {
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+            realm.destroy();
+
+            realm.getAuthenticationInfo(new UsernamePasswordToken("fred", "pass"));
+            assertThat(delegateRealm.threadNames.get(1), is(Thread.currentThread().getName()));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+
+    public static class Buckets extends LatencyHistogramTest {
+
+        @Test
+        public void value_within_upper_bound_of_its_bucket() throws Exception {
+            final long[] values = { 0L, 1L, 7L, 8L, 9L, 15L, 16L, 17L, 1000L, 123456789L, Long.MAX_VALUE };
+            for (final long value : values) {
+                final int bucket = LatencyHistogram.bucketOf(value);
+                assertTrue("" + value, value <= LatencyHistogram.upperBoundOf(bucket));
+                if(bucket > 0) {
+                    assertTrue("" + value, value > LatencyHistogram.upperBoundOf(bucket - 1));
+                }
+            }
+        }
+
+        @Test
+        public void precision() throws Exception {
+            final long value = 1000000L;
+            final long upperBound = LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(value));
+
+            assertTrue(upperBound - value <= value / 8);
+        }
+    }
+
+    public static class Snapshot extends LatencyHistogramTest {
+
+        @Test
+        public void empty() throws Exception {
+            final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            assertThat(snapshot.getCount(), is(0L));
+            assertThat(snapshot.getMeanNanos(), is(0L));
+            assertThat(snapshot.getValueAtPercentileNanos(99.0), is(0L));
+        }
+
+        @Test
+        public void happy_case() throws Exception {
+            for (int i = 1; i <= 100; i++) {
+                histogram.record(i * 1000L);
+            }
+
+            final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            assertThat(snapshot.getCount(), is(100L));
+            assertThat(snapshot.getMeanNanos(), is(50500L));
+            assertThat(snapshot.getMaxNanos(), is(100000L));
+            assertThat(snapshot.getValueAtPercentileNanos(100.0), is(100000L));
+
+            final long median = snapshot.getValueAtPercentileNanos(50.0);
+            assertTrue("" + median, median >= 50000L && median <= 50000L + 50000L / 8);
+        }
+
+        @Test
+        public void reset() throws Exception {
+            histogram.record(1000L);
+
+            histogram.reset();
+
+            assertThat(histogram.snapshot().getCount(), is(0L));
+            assertThat(histogram.snapshot().getMaxNanos(), is(0L));
+        }
+    }
+
+}
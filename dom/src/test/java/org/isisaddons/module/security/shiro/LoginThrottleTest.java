@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LoginThrottleTest {
+
+    static class FakeTicker extends Ticker {
+        long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(final long seconds) {
+            nanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+    }
+
+    final FakeTicker ticker = new FakeTicker();
+
+    // 3 failures in a burst, then one every 10 seconds
+    final LoginThrottle throttle = new LoginThrottle(3, 10, 100, ticker);
+
+    public static class IsExhausted extends LoginThrottleTest {
+
+        @Test
+        public void no_failures() throws Exception {
+            assertThat(throttle.isExhausted("fred"), is(false));
+        }
+
+        @Test
+        public void within_capacity() throws Exception {
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+
+            assertThat(throttle.isExhausted("fred"), is(false));
+        }
+
+        @Test
+        public void capacity_used_up() throws Exception {
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+
+            assertThat(throttle.isExhausted("fred"), is(true));
+            assertThat(throttle.isExhausted("bill"), is(false));
+        }
+
+        @Test
+        public void refills_over_time() throws Exception {
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+
+            ticker.advance(9);
+            assertThat(throttle.isExhausted("fred"), is(true));
+
+            ticker.advance(1);
+            assertThat(throttle.isExhausted("fred"), is(false));
+
+            throttle.recordFailure("fred");
+            assertThat(throttle.isExhausted("fred"), is(true));
+        }
+
+        @Test
+        public void refill_does_not_exceed_capacity() throws Exception {
+            throttle.recordFailure("fred");
+
+            ticker.advance(1000);
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+
+            assertThat(throttle.isExhausted("fred"), is(false));
+
+            throttle.recordFailure("fred");
+            assertThat(throttle.isExhausted("fred"), is(true));
+        }
+
+        @Test
+        public void null_key() throws Exception {
+            throttle.recordFailure(null);
+
+            assertThat(throttle.isExhausted(null), is(false));
+        }
+    }
+
+    public static class Reset extends LoginThrottleTest {
+
+        @Test
+        public void happy_case() throws Exception {
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+            throttle.recordFailure("fred");
+
+            throttle.reset("fred");
+
+            assertThat(throttle.isExhausted("fred"), is(false));
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import org.junit.Test;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PermissionForMemberTest {
+
+    public static class Parse extends PermissionForMemberTest {
+
+        @Test
+        public void viewing() throws Exception {
+            final PermissionForMember permission = new PermissionForMember("com.foo:Bar:bip:r");
+            assertThat(permission.getFeatureId(), is(ApplicationFeatureId.newMember("com.foo.Bar#bip")));
+            assertThat(permission.getMode(), is(ApplicationPermissionMode.VIEWING));
+        }
+
+        @Test
+        public void changing() throws Exception {
+            final PermissionForMember permission = new PermissionForMember("com.foo:Bar:bip:w");
+            assertThat(permission.getFeatureId(), is(ApplicationFeatureId.newMember("com.foo.Bar#bip")));
+            assertThat(permission.getMode(), is(ApplicationPermissionMode.CHANGING));
+        }
+
+        @Test
+        public void trailing_separators_are_ignored() throws Exception {
+            assertThat(new PermissionForMember("com.foo:Bar:bip:w:").getMode(), is(ApplicationPermissionMode.CHANGING));
+            assertThat(new PermissionForMember("com.foo:Bar:bip:r::").getFeatureId(), is(ApplicationFeatureId.newMember("com.foo.Bar#bip")));
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void too_few_segments() throws Exception {
+            new PermissionForMember("com.foo:Bar:r");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void too_many_segments() throws Exception {
+            new PermissionForMember("com.foo:Bar:bip:r:x");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void empty_mode_followed_by_separator() throws Exception {
+            new PermissionForMember("com.foo:Bar:bip::");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void unknown_mode() throws Exception {
+            new PermissionForMember("com.foo:Bar:bip:x");
+        }
+
+        @Test(expected = IllegalArgumentException.class)
+        public void no_separators() throws Exception {
+            new PermissionForMember("com.foo.Bar#bip");
+        }
+    }
+}
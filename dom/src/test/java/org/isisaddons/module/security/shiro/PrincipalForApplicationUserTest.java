@@ -0,0 +1,187 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import com.google.common.cache.CacheStats;
+
+import org.junit.Test;
+
+import org.apache.isis.core.metamodel.services.appfeat.ApplicationFeatureId;
+
+import org.isisaddons.module.security.dom.SerializationContractTest;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionMode;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionRule;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValue;
+import org.isisaddons.module.security.dom.permission.ApplicationPermissionValueSet;
+import org.isisaddons.module.security.dom.permission.PermissionsEvaluationService;
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PrincipalForApplicationUserTest {
+
+    final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+    final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+    final ApplicationFeatureId bopMember = ApplicationFeatureId.newMember("com.foo.Bar#bop");
+
+    final ApplicationPermissionValue allowViewingBar = new ApplicationPermissionValue(barClass, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.VIEWING);
+
+    static class PermissionsEvaluationServiceCounting implements PermissionsEvaluationService {
+        int count;
+
+        @Override
+        public ApplicationPermissionValueSet.Evaluation evaluate(
+                final ApplicationFeatureId targetMemberId,
+                final ApplicationPermissionMode mode,
+                final Collection<ApplicationPermissionValue> permissionValues) {
+            count++;
+            final boolean granted = permissionValues != null && !permissionValues.isEmpty();
+            return new ApplicationPermissionValueSet.Evaluation(granted ? permissionValues.iterator().next() : null, granted);
+        }
+    }
+
+    static PrincipalForApplicationUser principal(final String username, final ApplicationPermissionValueSet permissionSet, final int permissionCacheSize) {
+        return new PrincipalForApplicationUser(
+                username, "encrypted", AccountType.LOCAL, ApplicationUserStatus.ENABLED,
+                Collections.singleton("role"), permissionSet, permissionCacheSize);
+    }
+
+    public static class Grants extends PrincipalForApplicationUserTest {
+
+        @Test
+        public void memoizes_each_verdict() throws Exception {
+
+            final PermissionsEvaluationServiceCounting service = new PermissionsEvaluationServiceCounting();
+            final PrincipalForApplicationUser principal = principal("fred", new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), service), 10);
+
+            assertThat(principal.grants(bipMember, ApplicationPermissionMode.VIEWING), is(true));
+            assertThat(principal.grants(bipMember, ApplicationPermissionMode.VIEWING), is(true));
+            assertThat(service.count, is(1));
+
+            principal.grants(bipMember, ApplicationPermissionMode.CHANGING);
+            principal.grants(bopMember, ApplicationPermissionMode.VIEWING);
+            assertThat(service.count, is(3));
+        }
+
+        @Test
+        public void shared_by_principals_with_same_permission_set() throws Exception {
+
+            final PermissionsEvaluationServiceCounting service = new PermissionsEvaluationServiceCounting();
+            final ApplicationPermissionValueSet permissionSet = new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), service);
+
+            principal("fred", permissionSet, 10).grants(bipMember, ApplicationPermissionMode.VIEWING);
+            principal("mary", permissionSet, 10).grants(bipMember, ApplicationPermissionMode.VIEWING);
+
+            assertThat(service.count, is(1));
+        }
+
+        @Test
+        public void not_memoized_when_cache_size_is_zero() throws Exception {
+
+            final PermissionsEvaluationServiceCounting service = new PermissionsEvaluationServiceCounting();
+            final PrincipalForApplicationUser principal = principal("fred", new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), service), 0);
+
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+
+            assertThat(service.count, is(2));
+        }
+
+        @Test
+        public void object_permission_implies_member_permission() throws Exception {
+
+            final PrincipalForApplicationUser principal = principal("fred", new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), new PermissionsEvaluationServiceCounting()), 10);
+
+            final org.apache.shiro.authz.Permission permission = principal.getObjectPermissions().iterator().next();
+            assertThat(permission.implies(new PermissionForMember("com.foo:Bar:bip:r")), is(true));
+            assertThat(permission.implies(new PermissionForMember("com.foo:Baz:bip:r")), is(false));
+        }
+    }
+
+    public static class PermissionCacheStats extends PrincipalForApplicationUserTest {
+
+        @Test
+        public void hits_and_misses() throws Exception {
+
+            final PrincipalForApplicationUser principal = principal("fred", new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), new PermissionsEvaluationServiceCounting()), 10);
+
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+
+            final CacheStats stats = principal.getPermissionCacheStats();
+            assertThat(stats.hitCount(), is(1L));
+            assertThat(stats.missCount(), is(1L));
+        }
+
+        @Test
+        public void none_when_cache_size_is_zero() throws Exception {
+
+            final PrincipalForApplicationUser principal = principal("fred", new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), new PermissionsEvaluationServiceCounting()), 0);
+
+            assertThat(principal.getPermissionCacheStats(), is(nullValue()));
+        }
+
+        @Test
+        public void aggregated_by_metrics_since_reset() throws Exception {
+
+            final IsisModuleSecurityRealmMetrics metrics = new IsisModuleSecurityRealmMetrics();
+            final PrincipalForApplicationUser principal = principal("fred", new ApplicationPermissionValueSet(Arrays.asList(allowViewingBar), new PermissionsEvaluationServiceCounting()), 10);
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+
+            metrics.reset();
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+            principal.grants(bopMember, ApplicationPermissionMode.VIEWING);
+
+            assertThat(metrics.snapshot().getPermissionCacheStats().hitCount(), is(1L));
+            assertThat(metrics.getPermissionCacheCounts().get("MISSES"), is(1L));
+        }
+    }
+
+    public static class Serialization extends SerializationContractTest {
+
+        final ApplicationFeatureId barClass = ApplicationFeatureId.newClass("com.foo.Bar");
+        final ApplicationFeatureId bipMember = ApplicationFeatureId.newMember("com.foo.Bar#bip");
+
+        @Test
+        public void roundtrip_rebuilds_memoized_verdicts() throws Exception {
+
+            final ApplicationPermissionValueSet permissionSet = new ApplicationPermissionValueSet(
+                    Arrays.asList(new ApplicationPermissionValue(barClass, ApplicationPermissionRule.ALLOW, ApplicationPermissionMode.VIEWING)),
+                    new PermissionsEvaluationServiceCounting());
+            final PrincipalForApplicationUser principal = principal("fred", permissionSet, 10);
+            principal.grants(bipMember, ApplicationPermissionMode.VIEWING);
+
+            final PrincipalForApplicationUser deserialized = roundtripSerialization(principal);
+
+            assertThat(deserialized, is(not(sameInstance(principal))));
+            assertThat(deserialized.getUsername(), is("fred"));
+            assertThat(deserialized.getRoles(), is(principal.getRoles()));
+            assertThat(deserialized.getAccountType(), is(AccountType.LOCAL));
+            assertThat(deserialized.getObjectPermissions().size(), is(1));
+            assertThat(deserialized.grants(bipMember, ApplicationPermissionMode.VIEWING), is(true));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import java.util.Collections;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.realm.Realm;
+import org.apache.shiro.realm.SimpleAccountRealm;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ShiroUtilsTest {
+
+    @After
+    public void tearDown() throws Exception {
+        SecurityUtils.setSecurityManager(null);
+    }
+
+    public static class GetIsisModuleSecurityRealm extends ShiroUtilsTest {
+
+        @Test
+        public void resolves_realm() throws Exception {
+            final IsisModuleSecurityRealm realm = new IsisModuleSecurityRealm();
+            SecurityUtils.setSecurityManager(new DefaultSecurityManager(realm));
+
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(sameInstance(realm)));
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(sameInstance(realm)));
+        }
+
+        @Test
+        public void re_resolves_when_security_manager_replaced() throws Exception {
+            final IsisModuleSecurityRealm realm1 = new IsisModuleSecurityRealm();
+            SecurityUtils.setSecurityManager(new DefaultSecurityManager(realm1));
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(sameInstance(realm1)));
+
+            final IsisModuleSecurityRealm realm2 = new IsisModuleSecurityRealm();
+            SecurityUtils.setSecurityManager(new DefaultSecurityManager(realm2));
+
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(sameInstance(realm2)));
+        }
+
+        @Test
+        public void re_resolves_when_realms_replaced() throws Exception {
+            final IsisModuleSecurityRealm realm1 = new IsisModuleSecurityRealm();
+            final DefaultSecurityManager securityManager = new DefaultSecurityManager(realm1);
+            SecurityUtils.setSecurityManager(securityManager);
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(sameInstance(realm1)));
+
+            final IsisModuleSecurityRealm realm2 = new IsisModuleSecurityRealm();
+            securityManager.setRealms(Collections.<Realm>singletonList(realm2));
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(sameInstance(realm2)));
+
+            securityManager.setRealms(Collections.<Realm>singletonList(new SimpleAccountRealm()));
+            assertThat(ShiroUtils.getIsisModuleSecurityRealm(), is(nullValue()));
+        }
+
+        @Test(expected = AuthenticationException.class)
+        public void when_no_security_manager() throws Exception {
+            SecurityUtils.setSecurityManager(null);
+
+            ShiroUtils.getIsisModuleSecurityRealm();
+        }
+    }
+}
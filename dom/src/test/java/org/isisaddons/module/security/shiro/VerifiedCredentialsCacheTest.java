@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2014 Dan Haywood
+ *
+ *  Licensed under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+package org.isisaddons.module.security.shiro;
+
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import org.isisaddons.module.security.dom.user.AccountType;
+import org.isisaddons.module.security.dom.user.ApplicationUserStatus;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class VerifiedCredentialsCacheTest {
+
+    final VerifiedCredentialsCache cache = new VerifiedCredentialsCache(60, 100);
+
+    final PrincipalForApplicationUser principal = new PrincipalForApplicationUser(
+            "fred", "encrypted", AccountType.LOCAL, ApplicationUserStatus.ENABLED, null, null);
+
+    public static class Lookup extends VerifiedCredentialsCacheTest {
+
+        @Test
+        public void same_credentials() throws Exception {
+            cache.put("fred", "pass".toCharArray(), principal);
+
+            assertThat(cache.lookup("fred", "pass".toCharArray()), is(sameInstance(principal)));
+        }
+
+        @Test
+        public void different_password() throws Exception {
+            cache.put("fred", "pass".toCharArray(), principal);
+
+            assertThat(cache.lookup("fred", "wrong".toCharArray()), is(nullValue()));
+        }
+
+        @Test
+        public void not_verified() throws Exception {
+            assertThat(cache.lookup("fred", "pass".toCharArray()), is(nullValue()));
+        }
+
+        @Test
+        public void no_password() throws Exception {
+            cache.put("fred", null, principal);
+
+            assertThat(cache.lookup("fred", null), is(nullValue()));
+        }
+    }
+
+    public static class Invalidate extends VerifiedCredentialsCacheTest {
+
+        @Test
+        public void happy_case() throws Exception {
+            cache.put("fred", "pass".toCharArray(), principal);
+            cache.put("bill", "pass".toCharArray(), principal);
+
+            cache.invalidate("fred");
+
+            assertThat(cache.lookup("fred", "pass".toCharArray()), is(nullValue()));
+            assertThat(cache.lookup("bill", "pass".toCharArray()), is(sameInstance(principal)));
+        }
+
+        @Test
+        public void for_role() throws Exception {
+            final PrincipalForApplicationUser admin = new PrincipalForApplicationUser(
+                    "bill", "encrypted", AccountType.LOCAL, ApplicationUserStatus.ENABLED,
+                    Sets.newHashSet("admin"), null);
+            final PrincipalForApplicationUser user = new PrincipalForApplicationUser(
+                    "mary", "encrypted", AccountType.LOCAL, ApplicationUserStatus.ENABLED,
+                    Sets.newHashSet("user"), null);
+            cache.put("fred", "pass".toCharArray(), principal);
+            cache.put("bill", "pass".toCharArray(), admin);
+            cache.put("mary", "pass".toCharArray(), user);
+
+            cache.invalidateForRole("admin");
+
+            assertThat(cache.lookup("fred", "pass".toCharArray()), is(nullValue())); // roles not known
+            assertThat(cache.lookup("bill", "pass".toCharArray()), is(nullValue()));
+            assertThat(cache.lookup("mary", "pass".toCharArray()), is(sameInstance(user)));
+        }
+
+        @Test
+        public void all() throws Exception {
+            cache.put("fred", "pass".toCharArray(), principal);
+
+            cache.invalidateAll();
+
+            assertThat(cache.lookup("fred", "pass".toCharArray()), is(nullValue()));
+        }
+    }
+}